@@ -1,10 +1,18 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.example"
 version = "1.0-SNAPSHOT"
 
+java {
+    toolchain {
+        // virtual threads for the socket server executor
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+}
+
 repositories {
     mavenCentral()
 }
@@ -20,6 +28,7 @@ dependencies {
     implementation("ch.qos.logback:logback-classic:1.5.15")
 
     implementation("com.h2database:h2:2.2.224")
+    implementation("org.xerial:sqlite-jdbc:3.45.3.0")
 
     implementation("org.bouncycastle:bcprov-jdk18on:1.80")
 
@@ -37,9 +46,18 @@ dependencies {
     compileOnly("jakarta.servlet:jakarta.servlet-api:6.1.0-M2")
     implementation("jakarta.persistence:jakarta.persistence-api:3.2.0-M2")
 
+    // baseline for the JSON parser benchmark
+    jmh("com.fasterxml.jackson.core:jackson-databind:2.17.0")
+
 
 }
 
 tasks.test {
     useJUnitPlatform()
+}
+
+jmh {
+    warmupIterations = 2
+    iterations = 5
+    fork = 1
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package ru.spbstu.db;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbstu.server.HttpServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login lookup over a large users table: the former {@code login = ? AND password = ?}
+ * query on a table without an index against the unique login index with the hash
+ * compared in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserLoginIndexBenchmark {
+    private static final String SCAN_LOOKUP =
+            "SELECT userID, login, password, quota FROM users WHERE login = ? AND password = ?;";
+
+    @Param({"1000000"})
+    int users;
+
+    private Path unindexedFile;
+    private Path indexedFile;
+    private Connection unindexed;
+    private SqliteConnectionManager connections;
+    private UserRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        unindexedFile = Files.createTempFile("users-scan", ".db");
+        indexedFile = Files.createTempFile("users-indexed", ".db");
+
+        unindexed = DriverManager.getConnection("jdbc:sqlite:" + unindexedFile);
+        try (Statement statement = unindexed.createStatement()) {
+            statement.execute("CREATE TABLE users (userID INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "login TEXT NOT NULL, password TEXT NOT NULL, quota INTEGER NOT NULL);");
+        }
+        fill(unindexed);
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + indexedFile)) {
+            SchemaMigrations.migrate(conn);
+            fill(conn);
+        }
+        connections = new SqliteConnectionManager("jdbc:sqlite:" + indexedFile, 4);
+        repository = new UserRepository(connections);
+    }
+
+    private void fill(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO users (login, password, quota) VALUES (?, ?, ?);")) {
+            for (int i = 0; i < users; i++) {
+                insert.setString(1, "user" + i);
+                insert.setString(2, "hash" + i);
+                insert.setInt(3, 10);
+                insert.addBatch();
+                if (i % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        unindexed.close();
+        connections.close();
+        Files.deleteIfExists(unindexedFile);
+        Files.deleteIfExists(indexedFile);
+    }
+
+    @Benchmark
+    public Integer fullScanByLoginAndPassword() throws SQLException {
+        int i = ThreadLocalRandom.current().nextInt(users);
+        try (PreparedStatement statement = unindexed.prepareStatement(SCAN_LOOKUP)) {
+            statement.setString(1, "user" + i);
+            statement.setString(2, "hash" + i);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    @Benchmark
+    public HttpServer.UserApiResponse indexedLoginLookup() {
+        int i = ThreadLocalRandom.current().nextInt(users);
+        return repository.getUser("user" + i, "hash" + i);
+    }
+}
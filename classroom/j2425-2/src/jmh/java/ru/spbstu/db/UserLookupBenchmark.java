@@ -0,0 +1,78 @@
+package ru.spbstu.db;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbstu.server.HttpServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a login lookup that opens a connection and prepares the statement on every
+ * call (the former UserRepository code) with the cached connection and statement path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserLookupBenchmark {
+    private static final String LOOKUP =
+            "SELECT userID, login, password, quota FROM users WHERE login = ? AND password = ?;";
+
+    @Param({"1000"})
+    int users;
+
+    private Path databaseFile;
+    private String url;
+    private SqliteConnectionManager connections;
+    private UserRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        databaseFile = Files.createTempFile("users-bench", ".db");
+        url = "jdbc:sqlite:" + databaseFile;
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement statement = conn.createStatement()) {
+            statement.execute("CREATE TABLE users (userID INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "login TEXT NOT NULL, password TEXT NOT NULL, quota INTEGER NOT NULL);");
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO users (login, password, quota) VALUES (?, ?, ?);")) {
+                for (int i = 0; i < users; i++) {
+                    insert.setString(1, "user" + i);
+                    insert.setString(2, "hash" + i);
+                    insert.setInt(3, 10);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+        }
+        connections = new SqliteConnectionManager(url, 4);
+        repository = new UserRepository(connections);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connections.close();
+        Files.deleteIfExists(databaseFile);
+    }
+
+    @Benchmark
+    public Integer connectionPerCall() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement statement = conn.prepareStatement(LOOKUP)) {
+            statement.setString(1, "user" + (users / 2));
+            statement.setString(2, "hash" + (users / 2));
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    @Benchmark
+    public HttpServer.UserApiResponse cachedConnection() {
+        return repository.getUser("user" + (users / 2), "hash" + (users / 2));
+    }
+}
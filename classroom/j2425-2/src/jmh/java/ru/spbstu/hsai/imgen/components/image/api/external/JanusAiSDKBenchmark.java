@@ -0,0 +1,92 @@
+package ru.spbstu.hsai.imgen.components.image.api.external;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One operation is a burst of {@code concurrency} generation calls against the local stub:
+ * blocking HttpURLConnection calls on a thread pool, as the SDK used to make them,
+ * against the shared HttpClient with sendAsync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JanusAiSDKBenchmark {
+    private static final byte[] REQUEST = "{\"data\":[\"cat\",1231900767,1024,1024,true,1]}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"20"})
+    long latencyMs;
+
+    @Param({"64"})
+    int concurrency;
+
+    private JanusStubServer stub;
+    private JanusAiSDK sdk;
+    private ExecutorService blockingPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new JanusStubServer(0, latencyMs);
+        sdk = new JanusAiSDK(new JanusSettings(stub.baseUrl(), 5_000, 30_000));
+        blockingPool = Executors.newFixedThreadPool(concurrency);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        blockingPool.shutdownNow();
+        stub.close();
+    }
+
+    @Benchmark
+    public int urlConnectionPerCall() throws Exception {
+        List<Future<Integer>> calls = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            calls.add(blockingPool.submit(this::blockingCall));
+        }
+        int bytes = 0;
+        for (Future<Integer> call : calls) {
+            bytes += call.get();
+        }
+        return bytes;
+    }
+
+    private int blockingCall() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(stub.baseUrl() + "/run/predict").toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setDoOutput(true);
+        try (OutputStream os = connection.getOutputStream()) {
+            os.write(REQUEST);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return in.readAllBytes().length;
+        }
+    }
+
+    @Benchmark
+    public int httpClientAsync() {
+        List<CompletableFuture<Optional<String>>> calls = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            calls.add(sdk.generateImageAsync("cat"));
+        }
+        int found = 0;
+        for (CompletableFuture<Optional<String>> call : calls) {
+            found += call.join().isPresent() ? 1 : 0;
+        }
+        return found;
+    }
+}
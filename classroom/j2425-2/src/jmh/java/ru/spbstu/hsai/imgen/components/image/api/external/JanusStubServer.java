@@ -0,0 +1,139 @@
+package ru.spbstu.hsai.imgen.components.image.api.external;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Janus service: answers {@code POST /run/predict} after a fixed
+ * delay with a response shaped like the real one. Run {@link #main} and set
+ * {@code janus.baseUrls} to the printed address to use it with the application.
+ * Batched calls, where every input is a list, are answered with one image per prompt after
+ * the same delay, as a GPU would run them together; {@link #setGpus} limits how many calls
+ * are processed at once. Faults can be injected: a share of
+ * requests fails with 500, another share is answered only after {@code slowLatencyMs}.
+ */
+public class JanusStubServer implements Closeable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final long latencyMs;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile double failureRate;
+    private volatile double slowRate;
+    private volatile long slowLatencyMs;
+    private volatile Semaphore gpus;
+
+    public JanusStubServer(int port, long latencyMs) throws IOException {
+        this.latencyMs = latencyMs;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        server.createContext("/run/predict", this::predict);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void predict(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream in = exchange.getRequestBody()) {
+            JsonArray data = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8))
+                    .getAsJsonObject().getAsJsonArray("data");
+            long id = requests.incrementAndGet();
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < failureRate) {
+                failed.incrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            Semaphore limit = gpus;
+            if (limit != null) {
+                limit.acquire();
+            }
+            try {
+                Thread.sleep(roll < failureRate + slowRate ? slowLatencyMs : latencyMs);
+            } finally {
+                if (limit != null) {
+                    limit.release();
+                }
+            }
+            String images;
+            if (data.get(0).isJsonArray()) {
+                StringBuilder batch = new StringBuilder("[");
+                for (int i = 0; i < data.get(0).getAsJsonArray().size(); i++) {
+                    batch.append(i == 0 ? "" : ",").append(file(id + "-" + i));
+                }
+                images = batch.append(']').toString();
+            } else {
+                images = file(String.valueOf(id));
+            }
+            byte[] body = ("{\"data\":[" + images + "],"
+                    + "\"is_generating\":false,\"duration\":" + latencyMs / 1000.0 + "}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String file(String id) {
+        return "{\"url\":\"" + baseUrl() + "/file=/tmp/gradio/" + id + "/image.webp\"}";
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public void setSlowResponses(double slowRate, long slowLatencyMs) {
+        this.slowRate = slowRate;
+        this.slowLatencyMs = slowLatencyMs;
+    }
+
+    // 0 removes the limit
+    public void setGpus(int count) {
+        this.gpus = count > 0 ? new Semaphore(count) : null;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8090;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        JanusStubServer stub = new JanusStubServer(port, latencyMs);
+        if (args.length > 2) {
+            stub.setFailureRate(Double.parseDouble(args[2]));
+        }
+        System.out.println("Janus stub listening on " + stub.baseUrl() + " with " + latencyMs + " ms latency");
+    }
+}
@@ -0,0 +1,58 @@
+package ru.spbstu.hsai.imgen.components.image.batching;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbstu.hsai.imgen.components.image.api.external.JanusAiSDK;
+import ru.spbstu.hsai.imgen.components.image.api.external.JanusSettings;
+import ru.spbstu.hsai.imgen.components.image.api.external.JanusStubServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One operation is a burst of {@code concurrency} prompts against a stub with a single GPU:
+ * unbatched every prompt occupies it for the full latency, batched a whole batch does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchingImageGenApiBenchmark {
+    @Param({"1", "8", "32"})
+    int maxBatchSize;
+
+    @Param({"64"})
+    int concurrency;
+
+    private JanusStubServer stub;
+    private BatchingImageGenApi api;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new JanusStubServer(0, 20);
+        stub.setGpus(1);
+        JanusAiSDK sdk = new JanusAiSDK(new JanusSettings(stub.baseUrl(), 5_000, 60_000));
+        api = new BatchingImageGenApi(sdk, new BatchingSettings(maxBatchSize, 5));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        api.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public int burst() {
+        List<CompletableFuture<Optional<String>>> calls = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            calls.add(api.generateImageAsync("cat " + i));
+        }
+        int found = 0;
+        for (CompletableFuture<Optional<String>> call : calls) {
+            found += call.join().isPresent() ? 1 : 0;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,71 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbstu.hsai.imgen.components.image.api.external.JanusAiSDK;
+import ru.spbstu.hsai.imgen.components.image.api.external.JanusSettings;
+import ru.spbstu.hsai.imgen.components.image.api.external.JanusStubServer;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tail latency of single generation calls when a share of upstream responses is slow or
+ * fails: the bare SDK against the SDK behind retries, with and without hedging.
+ * Compare the p99 of the sample-time results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResilientImageGenApiBenchmark {
+    @Param({"0.05"})
+    double failureRate;
+
+    @Param({"0.05"})
+    double slowRate;
+
+    private JanusStubServer stub;
+    private JanusAiSDK sdk;
+    private ResilientImageGenApi retrying;
+    private ResilientImageGenApi hedging;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new JanusStubServer(0, 10);
+        stub.setFailureRate(failureRate);
+        stub.setSlowResponses(slowRate, 500);
+        sdk = new JanusAiSDK(new JanusSettings(stub.baseUrl(), 5_000, 30_000));
+        ResilienceSettings defaults = ResilienceSettings.defaults();
+        retrying = new ResilientImageGenApi(sdk, withHedging(defaults, false));
+        hedging = new ResilientImageGenApi(sdk, withHedging(defaults, true));
+    }
+
+    private static ResilienceSettings withHedging(ResilienceSettings s, boolean hedgingEnabled) {
+        // short backoff and a generous budget, the stub fails on purpose
+        return new ResilienceSettings(s.failureRateThreshold(), s.windowSize(), s.minimumCalls(),
+                s.openDurationMs(), s.halfOpenProbes(), s.maxAttempts(), 5, 50, 0.5,
+                100, hedgingEnabled, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        retrying.close();
+        hedging.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public Optional<String> bare() {
+        return sdk.generateImage("cat");
+    }
+
+    @Benchmark
+    public Optional<String> retries() {
+        return retrying.generateImage("cat");
+    }
+
+    @Benchmark
+    public Optional<String> retriesAndHedging() {
+        return hedging.generateImage("cat");
+    }
+}
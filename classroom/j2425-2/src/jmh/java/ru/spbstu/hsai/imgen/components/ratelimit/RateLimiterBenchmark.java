@@ -0,0 +1,39 @@
+package ru.spbstu.hsai.imgen.components.ratelimit;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost of a rate limit check from 8 threads, each with its own key and all on one key.
+ * The limit is high enough that requests are never refused.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class RateLimiterBenchmark {
+    private RateLimiter limiter;
+
+    @State(Scope.Thread)
+    public static class Client {
+        private static final AtomicInteger ids = new AtomicInteger();
+        final String key = "10.0.0." + ids.incrementAndGet();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(new RateLimitSettings(1e8, 1_000_000, 100_000));
+    }
+
+    @Benchmark
+    public long ownKey(Client client) {
+        return limiter.tryAcquire(client.key);
+    }
+
+    @Benchmark
+    public long sharedKey() {
+        return limiter.tryAcquire("10.0.0.0");
+    }
+}
@@ -0,0 +1,63 @@
+package ru.spbstu.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.*;
+import ru.spbstu.hsai.imgen.components.image.api.socket.dto.GenerateImageDTO;
+import ru.spbstu.server.AuthorizationRequest;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the bodies of socket requests with {@link JsonMapper}, Gson and Jackson:
+ * the two request records and an upstream response read as a map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonMapperBenchmark {
+    private static final Map<String, String> DOCUMENTS = Map.of(
+            "generate", "{\"accessToken\":\"3f2b8c1e-5a7d-4e9f-b6c0-1d2e3f4a5b6c\","
+                    + "\"text\":\"a lighthouse on a cliff at dusk, oil painting, warm light\"}",
+            "authorize", "{\"login\":\"user42\",\"password\":\"5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8\"}",
+            "response", "{\"data\":[[{\"url\":\"http://127.0.0.1:8090/file=/tmp/gradio/1/image.webp\","
+                    + "\"size\":null,\"orig_name\":\"image.webp\",\"is_file\":true}]],"
+                    + "\"is_generating\":false,\"duration\":0.5,\"average_duration\":12.25}"
+    );
+    private static final Map<String, Class<?>> TYPES = Map.of(
+            "generate", GenerateImageDTO.class,
+            "authorize", AuthorizationRequest.class,
+            "response", Map.class
+    );
+
+    @Param({"generate", "authorize", "response"})
+    public String document;
+
+    private String json;
+    private Class<?> type;
+    private final JsonMapper mapper = new JsonMapper();
+    private final Gson gson = new Gson();
+    private final ObjectMapper jackson = new ObjectMapper();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        json = DOCUMENTS.get(document);
+        type = TYPES.get(document);
+    }
+
+    @Benchmark
+    public Object inHouse() {
+        return mapper.fromJson(json, type);
+    }
+
+    @Benchmark
+    public Object gson() {
+        return gson.fromJson(json, type);
+    }
+
+    @Benchmark
+    public Object jackson() throws Exception {
+        return jackson.readValue(json, type);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.spbstu.json;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.spbstu.hsai.imgen.components.image.api.socket.dto.URLDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a socket response line: through a string and {@code getBytes} into a fresh
+ * buffer, as before, and straight into pooled buffers with {@link Utf8BufferWriter}.
+ * Run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Utf8BufferWriterBenchmark {
+    private final JsonMapper mapper = new JsonMapper();
+    private final ByteBufferPool pool = new ByteBufferPool(4096, 64);
+    private final URLDTO response = new URLDTO(200, "/var/lib/imgen/cache/3f2b8c1e5a7d4e9fb6c01d2e3f4a5b6c"
+            + "3f2b8c1e5a7d4e9fb6c01d2e3f4a5b6c");
+
+    @Benchmark
+    public ByteBuffer viaString() {
+        byte[] bytes = mapper.toJson(response).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1);
+        return buffer.put(bytes).put((byte) '\n').flip();
+    }
+
+    @Benchmark
+    public void pooled(Blackhole blackhole) {
+        Utf8BufferWriter out = new Utf8BufferWriter(pool);
+        mapper.toJson(response, out);
+        out.write('\n');
+        ByteBuffer[] buffers = out.finish();
+        blackhole.consume(buffers);
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+    }
+}
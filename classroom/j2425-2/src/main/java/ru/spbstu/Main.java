@@ -2,6 +2,7 @@ package ru.spbstu;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
@@ -43,7 +44,10 @@ public class Main {
         // Create a DispatcherServlet and register it with Tomcat
         DispatcherServlet dispatcherServlet = new DispatcherServlet(appContext);
 
-        Tomcat.addServlet(context, "dispatcherServlet", dispatcherServlet).setLoadOnStartup(1);
+        Wrapper servlet = Tomcat.addServlet(context, "dispatcherServlet", dispatcherServlet);
+        servlet.setLoadOnStartup(1);
+        // DeferredResult long-polling on /jobs/{id} needs async request processing
+        servlet.setAsyncSupported(true);
         context.addServletMappingDecoded("/*", "dispatcherServlet");
 
         try {
@@ -0,0 +1,20 @@
+package ru.spbstu.db;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+public final class PasswordHashes {
+
+    private PasswordHashes() {
+    }
+
+    // constant-time comparison, the lookup itself is done by login only
+    public static boolean matches(String storedHash, String passwordHash) {
+        if (storedHash == null || passwordHash == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                storedHash.getBytes(StandardCharsets.UTF_8),
+                passwordHash.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.spbstu.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Versioned schema of the SQLite user store. The applied version is kept in
+ * {@code PRAGMA user_version}, so every migration runs once per database file.
+ */
+public final class SchemaMigrations {
+
+    static Logger logger = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private static final List<List<String>> MIGRATIONS = List.of(
+            // 1: users table
+            List.of("""
+                    CREATE TABLE IF NOT EXISTS users (
+                    userID INTEGER PRIMARY KEY AUTOINCREMENT,
+                    login TEXT NOT NULL,
+                    password TEXT NOT NULL,
+                    quota INTEGER NOT NULL
+                    );"""),
+            // 2: logins are unique; earlier seeding could insert the same login several times
+            List.of("DELETE FROM users WHERE userID NOT IN (SELECT MIN(userID) FROM users GROUP BY login);",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS users_login_uindex ON users(login);")
+    );
+
+    private SchemaMigrations() {
+    }
+
+    public static void migrate(SqliteConnectionManager connections) throws SQLException {
+        connections.write(conn -> {
+            migrate(conn.connection());
+            return null;
+        });
+    }
+
+    static void migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            int version;
+            try (ResultSet rs = statement.executeQuery("PRAGMA user_version;")) {
+                version = rs.next() ? rs.getInt(1) : 0;
+            }
+            for (int i = version; i < MIGRATIONS.size(); i++) {
+                for (String sql : MIGRATIONS.get(i)) {
+                    statement.execute(sql);
+                }
+                statement.execute("PRAGMA user_version = " + (i + 1) + ";");
+                logger.info("Applied users schema migration {}", i + 1);
+            }
+        }
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.size();
+    }
+}
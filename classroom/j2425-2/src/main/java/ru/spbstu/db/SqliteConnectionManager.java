@@ -0,0 +1,308 @@
+package ru.spbstu.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Keeps a fixed set of long-lived SQLite reader connections and a single writer
+ * connection. A reader is used by one thread at a time; all writes are queued to the
+ * writer thread, which commits whatever has accumulated in one transaction. Every
+ * connection caches its prepared statements, so a repeated query is neither
+ * reconnected nor recompiled.
+ */
+public class SqliteConnectionManager implements Closeable {
+    public static final String DEFAULT_URL = "jdbc:sqlite:users.db";
+    private static final int DEFAULT_SIZE = 4;
+    private static final int MAX_WRITE_BATCH = 256;
+
+    static Logger logger = LoggerFactory.getLogger(SqliteConnectionManager.class);
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T execute(CachedConnection connection) throws SQLException;
+    }
+
+    private final String url;
+    private final BlockingQueue<CachedConnection> available;
+    private final List<CachedConnection> all = new ArrayList<>();
+    private final CachedConnection writer;
+    private final BlockingQueue<WriteTask<?>> writes = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    public SqliteConnectionManager(String url, int size) throws SQLException {
+        this(url, size, SqliteProfile.defaults());
+    }
+
+    public SqliteConnectionManager(String url, int size, SqliteProfile profile) throws SQLException {
+        this.url = url;
+        // the writer connection is opened first so it is the one that switches the journal mode
+        this.writer = open(profile);
+        this.available = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            CachedConnection connection = open(profile);
+            try (Statement statement = connection.connection().createStatement()) {
+                statement.execute("PRAGMA query_only = ON");
+            }
+            all.add(connection);
+            available.add(connection);
+        }
+        writerThread = new Thread(this::runWrites, "sqlite-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Opened {} reader connections and one writer to {} with {}", size, url, profile);
+    }
+
+    private CachedConnection open(SqliteProfile profile) throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        profile.apply(connection);
+        return new CachedConnection(connection);
+    }
+
+    /**
+     * Runs read-only work on one of the reader connections.
+     */
+    public <T> T withConnection(SqlWork<T> work) throws SQLException {
+        CachedConnection connection;
+        try {
+            connection = available.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + url, e);
+        }
+        try {
+            return work.execute(connection);
+        } finally {
+            available.add(connection);
+        }
+    }
+
+    /**
+     * Queues work for the writer thread. The future completes after the transaction
+     * containing the work has been committed.
+     */
+    public <T> CompletableFuture<T> writeAsync(SqlWork<T> work) {
+        WriteTask<T> task = new WriteTask<>(work);
+        if (closed) {
+            task.result.completeExceptionally(closedError());
+            return task.result;
+        }
+        writes.add(task);
+        // close() may have run between the check and the add; a task the writer did not take is failed here
+        if (closed && writes.remove(task)) {
+            task.result.completeExceptionally(closedError());
+        }
+        return task.result;
+    }
+
+    public <T> T write(SqlWork<T> work) throws SQLException {
+        try {
+            return writeAsync(work).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw e;
+        }
+    }
+
+    private void runWrites() {
+        List<WriteTask<?>> batch = new ArrayList<>();
+        try {
+            while (!closed || !writes.isEmpty()) {
+                try {
+                    batch.add(writes.take());
+                } catch (InterruptedException e) {
+                    if (!closed) {
+                        continue;
+                    }
+                    writes.drainTo(batch, MAX_WRITE_BATCH);
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                }
+                writes.drainTo(batch, MAX_WRITE_BATCH - batch.size());
+                commit(batch);
+                batch.clear();
+            }
+        } finally {
+            // nothing queued from here on is ever written
+            WriteTask<?> task;
+            while ((task = writes.poll()) != null) {
+                task.result.completeExceptionally(closedError());
+            }
+        }
+    }
+
+    private static SQLException closedError() {
+        return new SQLException("Connection manager is closed");
+    }
+
+    // each task runs inside its own savepoint, so a failing task does not undo the others
+    private void commit(List<WriteTask<?>> batch) {
+        Connection connection = writer.connection();
+        List<WriteTask<?>> succeeded = new ArrayList<>(batch.size());
+        try {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (WriteTask<?> task : batch) {
+                    statement.execute("SAVEPOINT write_task");
+                    try {
+                        task.execute(writer);
+                        statement.execute("RELEASE write_task");
+                        succeeded.add(task);
+                    } catch (SQLException | RuntimeException e) {
+                        statement.execute("ROLLBACK TO write_task");
+                        statement.execute("RELEASE write_task");
+                        task.result.completeExceptionally(e);
+                    }
+                }
+            }
+            connection.commit();
+            for (WriteTask<?> task : succeeded) {
+                task.complete();
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Write batch of {} tasks failed", batch.size(), e);
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                logger.error("", rollbackError);
+            }
+            // the failure may come from the transaction itself rather than a task, so tasks not reached yet fail too
+            for (WriteTask<?> task : batch) {
+                if (!task.result.isDone()) {
+                    task.result.completeExceptionally(e);
+                }
+            }
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.error("", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+        for (CachedConnection connection : all) {
+            connection.close();
+        }
+    }
+
+    private static final class WriteTask<T> {
+        final SqlWork<T> work;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        T value;
+
+        WriteTask(SqlWork<T> work) {
+            this.work = work;
+        }
+
+        void execute(CachedConnection connection) throws SQLException {
+            value = work.execute(connection);
+        }
+
+        void complete() {
+            result.complete(value);
+        }
+    }
+
+    public static final class CachedConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        CachedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Returns the cached statement for the query with its parameters cleared.
+         * The statement belongs to the cache and must not be closed by the caller.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        public Connection connection() {
+            return connection;
+        }
+
+        void close() {
+            try {
+                for (PreparedStatement statement : statements.values()) {
+                    statement.close();
+                }
+                statements.clear();
+                connection.close();
+            } catch (SQLException e) {
+                logger.error("", e);
+            }
+        }
+    }
+
+    private static SqliteProfile loadProfile() {
+        Properties properties = new Properties();
+        try (InputStream in = SqliteConnectionManager.class.getResourceAsStream("/application.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read application.properties, using default SQLite profile", e);
+        }
+        return SqliteProfile.fromProperties(properties);
+    }
+
+    private static volatile SqliteConnectionManager instance;
+    private static final Object monitor = new Object();
+
+    public static SqliteConnectionManager getInstance() {
+        if (instance == null) {
+            synchronized (monitor) {
+                if (instance == null) {
+                    try {
+                        instance = new SqliteConnectionManager(DEFAULT_URL, DEFAULT_SIZE, loadProfile());
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Unable to open " + DEFAULT_URL, e);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.spbstu.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Storage settings applied to every SQLite connection right after it is opened.
+ *
+ * @param cacheSizeKb page cache per connection in KiB
+ * @param mmapSize    bytes of the database file mapped into memory, 0 disables mmap
+ */
+public record SqliteProfile(
+        String journalMode,
+        String synchronous,
+        long mmapSize,
+        long cacheSizeKb,
+        int busyTimeoutMs
+) {
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final Set<String> SYNCHRONOUS_LEVELS = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+
+    public SqliteProfile {
+        journalMode = journalMode.toUpperCase();
+        synchronous = synchronous.toUpperCase();
+        if (!JOURNAL_MODES.contains(journalMode)) {
+            throw new IllegalArgumentException("Unknown journal mode: " + journalMode);
+        }
+        if (!SYNCHRONOUS_LEVELS.contains(synchronous)) {
+            throw new IllegalArgumentException("Unknown synchronous level: " + synchronous);
+        }
+    }
+
+    /**
+     * WAL lets readers run alongside the single writer; NORMAL sync is durable across
+     * application crashes and only loses the last commits on power loss in WAL mode.
+     */
+    public static SqliteProfile defaults() {
+        return new SqliteProfile("WAL", "NORMAL", 256L * 1024 * 1024, 64 * 1024, 5_000);
+    }
+
+    /**
+     * Reads {@code sqlite.journalMode}, {@code sqlite.synchronous}, {@code sqlite.mmapSize},
+     * {@code sqlite.cacheSizeKb} and {@code sqlite.busyTimeoutMs}, missing keys keep the defaults.
+     */
+    public static SqliteProfile fromProperties(Properties properties) {
+        SqliteProfile defaults = defaults();
+        return new SqliteProfile(
+                properties.getProperty("sqlite.journalMode", defaults.journalMode()),
+                properties.getProperty("sqlite.synchronous", defaults.synchronous()),
+                Long.parseLong(properties.getProperty("sqlite.mmapSize", String.valueOf(defaults.mmapSize()))),
+                Long.parseLong(properties.getProperty("sqlite.cacheSizeKb", String.valueOf(defaults.cacheSizeKb()))),
+                Integer.parseInt(properties.getProperty("sqlite.busyTimeoutMs", String.valueOf(defaults.busyTimeoutMs())))
+        );
+    }
+
+    void apply(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // busy_timeout first so that switching the journal mode waits for other connections
+            statement.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+            statement.execute("PRAGMA journal_mode = " + journalMode);
+            statement.execute("PRAGMA synchronous = " + synchronous);
+            statement.execute("PRAGMA mmap_size = " + mmapSize);
+            // a negative cache_size is interpreted as KiB rather than pages
+            statement.execute("PRAGMA cache_size = " + (-cacheSizeKb));
+        }
+    }
+}
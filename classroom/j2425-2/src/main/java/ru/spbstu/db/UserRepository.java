@@ -5,6 +5,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.spbstu.server.HttpServer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -14,66 +16,84 @@ import java.util.List;
 
 public class UserRepository {
 
-    final String DATABASE_URL = "jdbc:sqlite:users.db";
-
     static Logger logger = LoggerFactory.getLogger(UserRepository.class);
 
+    private final SqliteConnectionManager connections;
+
+    public UserRepository() {
+        this(SqliteConnectionManager.getInstance());
+    }
+
+    public UserRepository(SqliteConnectionManager connections) {
+        this.connections = connections;
+    }
+
     public record UserDAO(Integer userID, String login, String password, Integer quota){}
 
-    public List<HttpServer.UserApiResponse> getUsers() {
-        String sql = "SELECT userID, login, password, quota FROM users;";
-
-        List<HttpServer.UserApiResponse> users = new ArrayList<>();
-
-        try(Connection conn = DriverManager.getConnection(DATABASE_URL);
-            PreparedStatement statement = conn.prepareStatement(sql)
-        ){
-            ResultSet rs = statement.executeQuery();
-            while(rs.next()){
-                Integer userID = rs.getInt(1);
-                String login = rs.getString(2);
-                String password = rs.getString(3);
-                Integer quota = rs.getInt(4);
-
-                users.add(new HttpServer.UserApiResponse(userID, login, quota));
-            }
-            logger.info("Executed getUsers");
-            return users;
+    @FunctionalInterface
+    public interface UserRowConsumer {
+        void accept(Integer userID, String login, Integer quota) throws IOException;
+    }
+
+    /**
+     * Passes up to {@code limit} users with an id greater than {@code afterId} to the consumer
+     * in id order while the result set is read. Returns the number of rows.
+     */
+    public int forEachUserAfter(int afterId, int limit, UserRowConsumer consumer) throws IOException {
+        String sql = "SELECT userID, login, quota FROM users WHERE userID > ? ORDER BY userID LIMIT ?;";
+
+        try{
+            return connections.withConnection(conn -> {
+                PreparedStatement statement = conn.prepare(sql);
+                statement.setInt(1, afterId);
+                statement.setInt(2, limit);
+                int rows = 0;
+                try(ResultSet rs = statement.executeQuery()){
+                    while(rs.next()){
+                        consumer.accept(rs.getInt(1), rs.getString(2), rs.getInt(3));
+                        rows++;
+                    }
+                }catch (IOException e){
+                    // SqlWork only lets SQLException through, unwrapped again below
+                    throw new UncheckedIOException(e);
+                }
+                logger.info("Executed users page after {}", afterId);
+                return rows;
+            });
+        }catch (UncheckedIOException e){
+            throw e.getCause();
         }catch (SQLException e){
             logger.error("", e);
         }
-        return users;
+        return 0;
     }
 
     public HttpServer.UserApiResponse getUser(String login, String passwordHash){
-        String sql = "SELECT userID, login, password, quota FROM users WHERE login = ? AND password = ?;";
-
-        try(Connection conn = DriverManager.getConnection(DATABASE_URL);
-            PreparedStatement statement = conn.prepareStatement(sql)
-        ){
-            statement.setString(1, login);
-            statement.setString(2, passwordHash);
-            ResultSet rs = statement.executeQuery();
-            while(rs.next()){
-                Integer userID = rs.getInt(1);
-                Integer quota = rs.getInt(4);
-                logger.info("Executed get user by login and password hash");
-                return new HttpServer.UserApiResponse(userID, login, quota);
-            }
+        // unique index lookup by login, the hash is compared here instead of in the WHERE clause
+        String sql = "SELECT userID, login, password, quota FROM users WHERE login = ?;";
+
+        try{
+            return connections.withConnection(conn -> {
+                PreparedStatement statement = conn.prepare(sql);
+                statement.setString(1, login);
+                try(ResultSet rs = statement.executeQuery()){
+                    if(rs.next() && PasswordHashes.matches(rs.getString(3), passwordHash)){
+                        Integer userID = rs.getInt(1);
+                        Integer quota = rs.getInt(4);
+                        logger.info("Executed get user by login and password hash");
+                        return new HttpServer.UserApiResponse(userID, login, quota);
+                    }
+                }
+                return null;
+            });
         }catch (SQLException e){
             logger.error("", e);
         }
         return null;
     }
 
+    // runs the DDL and inserts the seed users that are not there yet; called once at startup
     public void initializeDB() {
-        String sql = "CREATE TABLE IF NOT EXISTS users (\n"
-                + "userID INTEGER PRIMARY KEY AUTOINCREMENT,\n"
-                + "login TEXT NOT NULL,\n"
-                + "password TEXT NOT NULL,\n"
-                + "quota INTEGER NOT NULL\n"
-                + ");";
-
         String passwordHash1 = "";
         String passwordHash2 = "";
         String passwordHash3 = "";
@@ -94,31 +114,24 @@ public class UserRepository {
         users.add(new UserDAO(0, "Arseniy3", passwordHash3, 3));
 
         String usersInitialize = """
-                    INSERT INTO users (login, password, quota) VALUES (?, ?, ?);
+                    INSERT OR IGNORE INTO users (login, password, quota) VALUES (?, ?, ?);
                 """;
 
-        try(Connection conn = DriverManager.getConnection(DATABASE_URL);
-            PreparedStatement statement = conn.prepareStatement(sql);
-        ){
-            statement.execute();
-
-            logger.info("Database initialized");
-        }catch (SQLException e){
-            logger.error("", e);
-        }
-
-        try(Connection conn = DriverManager.getConnection(DATABASE_URL);
-            PreparedStatement statementInsert = conn.prepareStatement(usersInitialize)
-        ){
-
-            for (UserDAO user: users){
-                statementInsert.setString(1, user.login);
-                statementInsert.setString(2, user.password);
-                statementInsert.setInt(3, user.quota);
-                statementInsert.execute();
-            }
-
-            logger.info("Data inserted");
+        try{
+            connections.write(conn -> {
+                SchemaMigrations.migrate(conn.connection());
+                logger.info("Database initialized");
+
+                PreparedStatement statementInsert = conn.prepare(usersInitialize);
+                for (UserDAO user: users){
+                    statementInsert.setString(1, user.login);
+                    statementInsert.setString(2, user.password);
+                    statementInsert.setInt(3, user.quota);
+                    statementInsert.execute();
+                }
+                logger.info("Data inserted");
+                return null;
+            });
         }catch (SQLException e){
             logger.error("", e);
         }
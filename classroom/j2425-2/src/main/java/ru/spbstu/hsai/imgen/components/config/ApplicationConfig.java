@@ -1,18 +1,80 @@
 package ru.spbstu.hsai.imgen.components.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import ru.spbstu.hsai.imgen.components.image.api.external.JanusAiSDK;
-import ru.spbstu.hsai.imgen.components.image.service.ImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.api.external.JanusSettings;
+import ru.spbstu.hsai.imgen.components.image.batching.BatchingImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.batching.BatchingSettings;
+import ru.spbstu.hsai.imgen.components.image.resilience.ResilienceSettings;
+import ru.spbstu.hsai.imgen.components.image.resilience.ResilientImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.routing.RoutingImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.routing.RoutingSettings;
+import ru.spbstu.hsai.imgen.components.image.routing.RoutingStrategy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
 @ComponentScan("ru.spbstu.hsai.imgen.components")
+@PropertySource("classpath:application.properties")
 public class ApplicationConfig {
 
-    @Bean(name = "janus")
-    public ImageGenApi provideImageGenApi(){
-        return JanusAiSDK.getInstance();
+    @Autowired
+    Environment env;
+
+    @Bean
+    public RoutingImageGenApi routingImageGenApi(){
+        Map<String, JanusAiSDK> backends = new LinkedHashMap<>();
+        for (String baseUrl : env.getProperty("janus.baseUrls", String[].class, new String[]{JanusSettings.DEFAULT_BASE_URL})) {
+            backends.put(baseUrl.strip(), new JanusAiSDK(new JanusSettings(
+                    baseUrl.strip(),
+                    env.getProperty("janus.connectTimeoutMs", Long.class, 10_000L),
+                    env.getProperty("janus.requestTimeoutMs", Long.class, 120_000L)
+            )));
+        }
+        RoutingSettings defaults = RoutingSettings.defaults();
+        return new RoutingImageGenApi(backends, new RoutingSettings(
+                RoutingStrategy.valueOf(env.getProperty("routing.strategy", defaults.strategy().name())),
+                env.getProperty("routing.ewmaDecayMs", Long.class, defaults.ewmaDecayMs()),
+                env.getProperty("routing.ejectAfterFailures", Integer.class, defaults.ejectAfterFailures()),
+                env.getProperty("routing.ejectionMs", Long.class, defaults.ejectionMs())
+        ));
+    }
+
+    @Bean(destroyMethod = "close")
+    public BatchingImageGenApi batchingImageGenApi(RoutingImageGenApi routing){
+        BatchingSettings defaults = BatchingSettings.defaults();
+        return new BatchingImageGenApi(routing, new BatchingSettings(
+                env.getProperty("batching.maxBatchSize", Integer.class, defaults.maxBatchSize()),
+                env.getProperty("batching.maxWaitMs", Long.class, defaults.maxWaitMs())
+        ));
+    }
+
+    // the inner layers are ImageGenApi beans too, callers get the outermost one
+    @Primary
+    @Bean(name = "janus", destroyMethod = "close")
+    public ResilientImageGenApi provideImageGenApi(BatchingImageGenApi batching){
+        ResilienceSettings defaults = ResilienceSettings.defaults();
+        return new ResilientImageGenApi(batching, new ResilienceSettings(
+                env.getProperty("resilience.failureRateThreshold", Double.class, defaults.failureRateThreshold()),
+                env.getProperty("resilience.windowSize", Integer.class, defaults.windowSize()),
+                env.getProperty("resilience.minimumCalls", Integer.class, defaults.minimumCalls()),
+                env.getProperty("resilience.openDurationMs", Long.class, defaults.openDurationMs()),
+                env.getProperty("resilience.halfOpenProbes", Integer.class, defaults.halfOpenProbes()),
+                env.getProperty("resilience.maxAttempts", Integer.class, defaults.maxAttempts()),
+                env.getProperty("resilience.baseBackoffMs", Long.class, defaults.baseBackoffMs()),
+                env.getProperty("resilience.maxBackoffMs", Long.class, defaults.maxBackoffMs()),
+                env.getProperty("resilience.retryBudgetRatio", Double.class, defaults.retryBudgetRatio()),
+                env.getProperty("resilience.minRetriesPerSecond", Integer.class, defaults.minRetriesPerSecond()),
+                env.getProperty("resilience.hedgingEnabled", Boolean.class, defaults.hedgingEnabled()),
+                env.getProperty("resilience.hedgeMinDelayMs", Long.class, defaults.hedgeMinDelayMs())
+        ));
     }
 
 }
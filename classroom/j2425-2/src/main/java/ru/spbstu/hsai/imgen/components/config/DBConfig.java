@@ -12,9 +12,10 @@ import org.springframework.data.jdbc.repository.config.EnableJdbcRepositories;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.data.relational.core.mapping.NamingStrategy;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.jdbc.support.JdbcTransactionManager;
 import org.springframework.transaction.TransactionManager;
+import ru.spbstu.hsai.imgen.components.db.PoolSettings;
+import ru.spbstu.hsai.imgen.components.db.PooledDataSource;
 
 import javax.sql.DataSource;
 import java.util.Optional;
@@ -28,14 +29,20 @@ public class DBConfig extends AbstractJdbcConfiguration {
     Environment env;
 
 
-    @Bean
-    public DataSource dataSource() {
-        final DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(env.getProperty("driverClassName"));
-        dataSource.setUrl(env.getProperty("url"));
-        dataSource.setUsername(env.getProperty("user"));
-        dataSource.setPassword(env.getProperty("password"));
-        return dataSource;
+    @Bean(destroyMethod = "close")
+    public PooledDataSource dataSource() {
+        return new PooledDataSource(new PoolSettings(
+                env.getProperty("driverClassName"),
+                env.getProperty("url"),
+                env.getProperty("user"),
+                env.getProperty("password"),
+                env.getProperty("pool.minSize", Integer.class, 2),
+                env.getProperty("pool.maxSize", Integer.class, 10),
+                env.getProperty("pool.connectionTimeoutMs", Long.class, 30_000L),
+                env.getProperty("pool.idleTimeoutMs", Long.class, 600_000L),
+                env.getProperty("pool.validationTimeoutSeconds", Integer.class, 2),
+                env.getProperty("pool.leakDetectionThresholdMs", Long.class, 60_000L)
+        ));
     }
 
     @Bean
@@ -0,0 +1,27 @@
+package ru.spbstu.hsai.imgen.components.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import ru.spbstu.hsai.imgen.components.image.jobs.GenerationJobQueue;
+import ru.spbstu.hsai.imgen.components.image.jobs.JobSettings;
+import ru.spbstu.hsai.imgen.components.image.service.ImageGenService;
+
+@Configuration
+@PropertySource("classpath:application.properties")
+public class JobsConfig {
+
+    @Autowired
+    Environment env;
+
+    @Bean(destroyMethod = "close")
+    public GenerationJobQueue generationJobs(ImageGenService imageGenService) {
+        return new GenerationJobQueue(new JobSettings(
+                env.getProperty("jobs.workers", Integer.class, 4),
+                env.getProperty("jobs.queueCapacity", Integer.class, 1000),
+                env.getProperty("jobs.retentionMs", Long.class, 600_000L)
+        ), imageGenService::generateImage);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.spbstu.hsai.imgen.components.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import ru.spbstu.hsai.imgen.components.image.cache.PromptCache;
+import ru.spbstu.hsai.imgen.components.image.cache.PromptCacheSettings;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+@PropertySource("classpath:application.properties")
+public class PromptCacheConfig {
+
+    @Autowired
+    Environment env;
+
+    @Bean(destroyMethod = "close")
+    public PromptCache promptCache() throws IOException {
+        return new PromptCache(new PromptCacheSettings(
+                Path.of(env.getProperty("imageCache.directory", "images")),
+                env.getProperty("imageCache.maxEntries", Integer.class, 10_000),
+                env.getProperty("imageCache.maxBytes", Long.class, 2L * 1024 * 1024 * 1024),
+                env.getProperty("imageCache.flushIntervalMs", Long.class, 10_000L)
+        ));
+    }
+}
@@ -0,0 +1,27 @@
+package ru.spbstu.hsai.imgen.components.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import ru.spbstu.hsai.imgen.components.user.dao.UserDao;
+import ru.spbstu.hsai.imgen.components.user.quota.QuotaLedger;
+import ru.spbstu.hsai.imgen.components.user.quota.QuotaSettings;
+
+@Configuration
+@PropertySource("classpath:application.properties")
+public class QuotaConfig {
+
+    @Autowired
+    Environment env;
+
+    @Bean(destroyMethod = "close")
+    public QuotaLedger quotaLedger(UserDao userDao) {
+        QuotaSettings defaults = QuotaSettings.defaults();
+        return new QuotaLedger(new QuotaSettings(
+                env.getProperty("quota.flushIntervalMs", Long.class, defaults.flushIntervalMs()),
+                env.getProperty("quota.maxBatchSize", Integer.class, defaults.maxBatchSize())
+        ), userDao);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.spbstu.hsai.imgen.components.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimitSettings;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimits;
+
+@Configuration
+@PropertySource("classpath:application.properties")
+public class RateLimitConfig {
+
+    @Autowired
+    Environment env;
+
+    @Bean(destroyMethod = "close")
+    public RateLimits rateLimits() {
+        int maxKeys = env.getProperty("rateLimit.maxKeys", Integer.class, 100_000);
+        return new RateLimits(
+                new RateLimitSettings(
+                        env.getProperty("rateLimit.address.permitsPerSecond", Double.class, 20.0),
+                        env.getProperty("rateLimit.address.burst", Integer.class, 40),
+                        maxKeys),
+                new RateLimitSettings(
+                        env.getProperty("rateLimit.user.permitsPerSecond", Double.class, 5.0),
+                        env.getProperty("rateLimit.user.burst", Integer.class, 10),
+                        maxKeys)
+        );
+    }
+}
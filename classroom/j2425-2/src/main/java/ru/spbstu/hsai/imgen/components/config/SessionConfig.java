@@ -0,0 +1,29 @@
+package ru.spbstu.hsai.imgen.components.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
+import ru.spbstu.hsai.imgen.components.session.SessionSettings;
+import ru.spbstu.hsai.imgen.components.session.SessionStore;
+import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
+
+@Configuration
+@PropertySource("classpath:application.properties")
+public class SessionConfig {
+
+    @Autowired
+    Environment env;
+
+    @Bean(destroyMethod = "close")
+    public SessionStore<UserEntity> userSessions() {
+        SessionSettings defaults = SessionSettings.defaults();
+        return new SessionStore<>(new SessionSettings(
+                env.getProperty("session.idleTimeoutMs", Long.class, defaults.idleTimeoutMs()),
+                env.getProperty("session.absoluteTimeoutMs", Long.class, defaults.absoluteTimeoutMs()),
+                env.getProperty("session.maxSessions", Integer.class, defaults.maxSessions()),
+                env.getProperty("session.sweepIntervalMs", Long.class, defaults.sweepIntervalMs())
+        ));
+    }
+}
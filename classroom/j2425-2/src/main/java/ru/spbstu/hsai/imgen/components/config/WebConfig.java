@@ -1,8 +1,12 @@
 package ru.spbstu.hsai.imgen.components.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.spbstu.hsai.imgen.components.ratelimit.api.http.RateLimitInterceptor;
 
 @Configuration
 @EnableWebMvc
@@ -10,6 +14,13 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
                                 "ru.spbstu.hsai.imagen.components.image.api.http",
                                 "ru.spbstu.hsai.imagen.components.user.api.http"
                                 })
-public class WebConfig {
+public class WebConfig implements WebMvcConfigurer {
 
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor);
+    }
 }
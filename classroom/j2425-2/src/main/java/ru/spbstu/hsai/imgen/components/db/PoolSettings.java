@@ -0,0 +1,20 @@
+package ru.spbstu.hsai.imgen.components.db;
+
+public record PoolSettings(
+        String driverClassName,
+        String url,
+        String username,
+        String password,
+        int minSize,
+        int maxSize,
+        long connectionTimeoutMs,
+        long idleTimeoutMs,
+        int validationTimeoutSeconds,
+        long leakDetectionThresholdMs
+) {
+    public PoolSettings {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min " + minSize + ", max " + maxSize);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ru.spbstu.hsai.imgen.components.db;
+
+public record PoolStats(
+        Integer total,
+        Integer active,
+        Integer idle,
+        Integer maxSize,
+        Double utilization,
+        Long borrowed,
+        Long timeouts,
+        Double avgWaitMs,
+        Double maxWaitMs,
+        Long created,
+        Long destroyed,
+        Long leaksDetected
+) {
+}
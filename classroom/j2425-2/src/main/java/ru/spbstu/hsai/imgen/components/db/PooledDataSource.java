@@ -0,0 +1,354 @@
+package ru.spbstu.hsai.imgen.components.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bounds JDBC connection pool. Physical connections are kept between borrows,
+ * validated before they are handed out and closed after staying idle for too long
+ * (never below the minimum size). Borrowed connections held longer than the leak
+ * detection threshold are reported with the stack trace of the borrower.
+ */
+public class PooledDataSource implements DataSource, Closeable {
+    private static final long MAINTENANCE_INTERVAL_MS = 5_000;
+
+    static Logger logger = LoggerFactory.getLogger(PooledDataSource.class);
+
+    private final PoolSettings settings;
+    private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<Lease> leased = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService maintenance;
+    private volatile boolean closed;
+
+    private final LongAdder borrowed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    public PooledDataSource(PoolSettings settings) {
+        this.settings = settings;
+        this.permits = new Semaphore(settings.maxSize(), true);
+        if (settings.driverClassName() != null && !settings.driverClassName().isBlank()) {
+            try {
+                Class.forName(settings.driverClassName());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("JDBC driver not found: " + settings.driverClassName(), e);
+            }
+        }
+        fillToMinimum();
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain,
+                MAINTENANCE_INTERVAL_MS, MAINTENANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        logger.info("Connection pool started: {} (min {}, max {})",
+                settings.url(), settings.minSize(), settings.maxSize());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(settings.connectionTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("No connection available in " + settings.connectionTimeoutMs() + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PhysicalConnection connection = takeValidConnection();
+            long waited = System.nanoTime() - start;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+            borrowed.increment();
+            Lease lease = new Lease(connection);
+            leased.add(lease);
+            return lease.proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections use the configured credentials");
+    }
+
+    private PhysicalConnection takeValidConnection() throws SQLException {
+        PhysicalConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (isValid(connection)) {
+                return connection;
+            }
+            logger.warn("Discarding broken pooled connection");
+            destroy(connection);
+        }
+        return create();
+    }
+
+    private boolean isValid(PhysicalConnection connection) {
+        try {
+            return connection.raw.isValid(settings.validationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PhysicalConnection create() throws SQLException {
+        Connection raw = DriverManager.getConnection(settings.url(), settings.username(), settings.password());
+        total.incrementAndGet();
+        created.increment();
+        return new PhysicalConnection(raw);
+    }
+
+    private void destroy(PhysicalConnection connection) {
+        total.decrementAndGet();
+        destroyed.increment();
+        try {
+            connection.raw.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing pooled connection", e);
+        }
+    }
+
+    private void release(Lease lease) {
+        leased.remove(lease);
+        PhysicalConnection connection = lease.connection;
+        try {
+            if (closed || connection.raw.isClosed()) {
+                destroy(connection);
+                return;
+            }
+            if (!connection.raw.getAutoCommit()) {
+                connection.raw.rollback();
+                connection.raw.setAutoCommit(true);
+            }
+            connection.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(connection);
+        } catch (SQLException e) {
+            logger.warn("Discarding connection that failed to reset", e);
+            destroy(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void maintain() {
+        try {
+            evictIdle();
+            fillToMinimum();
+            detectLeaks();
+        } catch (RuntimeException e) {
+            logger.error("Connection pool maintenance failed", e);
+        }
+    }
+
+    // the deque is LIFO, so the connections idle the longest are at its tail
+    private void evictIdle() {
+        long deadline = System.currentTimeMillis() - settings.idleTimeoutMs();
+        PhysicalConnection connection;
+        while (total.get() > settings.minSize()
+                && (connection = idle.peekLast()) != null
+                && connection.lastUsed < deadline) {
+            if (idle.removeLastOccurrence(connection)) {
+                destroy(connection);
+            }
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && total.get() < settings.minSize()) {
+            try {
+                PhysicalConnection connection = create();
+                idle.offerLast(connection);
+            } catch (SQLException e) {
+                logger.error("Unable to open pooled connection", e);
+                return;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (settings.leakDetectionThresholdMs() <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Lease lease : leased) {
+            if (!lease.reported && now - lease.borrowedAt > settings.leakDetectionThresholdMs()) {
+                lease.reported = true;
+                leaks.increment();
+                logger.warn("Connection borrowed {} ms ago was not returned, possible leak",
+                        now - lease.borrowedAt, lease.borrowedBy);
+            }
+        }
+    }
+
+    public PoolStats stats() {
+        int totalNow = total.get();
+        int active = leased.size();
+        long borrowedCount = borrowed.sum();
+        return new PoolStats(
+                totalNow,
+                active,
+                idle.size(),
+                settings.maxSize(),
+                (double) active / settings.maxSize(),
+                borrowedCount,
+                timeouts.sum(),
+                borrowedCount == 0 ? 0 : waitNanos.sum() / 1e6 / borrowedCount,
+                maxWaitNanos.get() / 1e6,
+                created.sum(),
+                destroyed.sum(),
+                leaks.sum()
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        maintenance.shutdownNow();
+        PhysicalConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            destroy(connection);
+        }
+        logger.info("Connection pool closed, {} connections still borrowed", leased.size());
+    }
+
+    private static final class PhysicalConnection {
+        final Connection raw;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PhysicalConnection(Connection raw) {
+            this.raw = raw;
+        }
+    }
+
+    /**
+     * A single borrow of a physical connection. The proxy handed to the caller returns the
+     * connection to the pool on close() and rejects any use after that.
+     */
+    private final class Lease implements InvocationHandler {
+        final PhysicalConnection connection;
+        final Connection proxy;
+        final long borrowedAt = System.currentTimeMillis();
+        final Exception borrowedBy;
+        // close() may be called from several threads, only the first returns the connection
+        final AtomicBoolean released = new AtomicBoolean();
+        volatile boolean reported;
+
+        Lease(PhysicalConnection connection) {
+            this.connection = connection;
+            this.borrowedBy = settings.leakDetectionThresholdMs() > 0 ? new Exception("Connection borrowed here") : null;
+            this.proxy = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (released.compareAndSet(false, true)) {
+                        release(this);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return released.get() || connection.raw.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + connection.raw + "]";
+                }
+                default -> {
+                    if (released.get()) {
+                        throw new SQLException("Connection is closed");
+                    }
+                }
+            }
+            try {
+                return method.invoke(connection.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        throw new SQLException("Not a wrapper for " + iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -2,64 +2,152 @@ package ru.spbstu.hsai.imgen.components.image.api.external;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.spbstu.hsai.imgen.components.image.api.external.dto.GenerateImageJanusAiDTO;
+import ru.spbstu.hsai.imgen.components.image.api.external.dto.JanusAiBatchResponseDTO;
+import ru.spbstu.hsai.imgen.components.image.api.external.dto.JanusAiResponseDTO;
+import ru.spbstu.hsai.imgen.components.image.service.BatchImageGenApi;
 import ru.spbstu.hsai.imgen.components.image.service.ImageGenApi;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.*;
-import java.util.HashMap;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
-public class JanusAiSDK implements ImageGenApi {
+/**
+ * Client of the Janus generation service. One {@link HttpClient} is shared by all calls,
+ * so connections are kept open and reused (multiplexed when the service speaks HTTP/2).
+ */
+public class JanusAiSDK implements BatchImageGenApi {
     private static Gson gson = new GsonBuilder().serializeNulls().create();
     private static Logger logger = LoggerFactory.getLogger(JanusAiSDK.class);
-    private final static String BASE_URL = "https://llmhacker-realtime-flux-modified-flux-schnell-for-ja-p.hf.space/run/predict";
+    private static final String PREDICT_PATH = "/run/predict";
+
+    private static final int SEED = 1231900767;
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 1024;
+    private static final int STEPS = 1;
+
+    private final HttpClient client;
+    private final URI predictUri;
+    private final Duration requestTimeout;
+
+    public JanusAiSDK(JanusSettings settings) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(settings.connectTimeoutMs()))
+                .build();
+        this.predictUri = URI.create(settings.baseUrl() + PREDICT_PATH);
+        this.requestTimeout = Duration.ofMillis(settings.requestTimeoutMs());
+    }
+
+    @Override
+    public String parameters() {
+        return "janus;seed=" + SEED + ";size=" + WIDTH + "x" + HEIGHT + ";steps=" + STEPS;
+    }
 
     @Override
     public Optional<String> generateImage(String prompt) {
-        try {
-            URL url = new URL(BASE_URL);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            try(OutputStream os = connection.getOutputStream()) {
-                byte[] input = gson.toJson(new GenerateImageJanusAiDTO(
-                        List.of(prompt,1231900767,1024,1024,true,1),
-                        null,
-                        3,
-                        10,
-                        "4hc2g6kcoli"
-                )).getBytes("utf-8");
-                os.write(input, 0, input.length);
-            }
+        return generateImageAsync(prompt).join();
+    }
 
-            try(BufferedReader br = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream(), "utf-8"))) {
-                StringBuilder response = new StringBuilder();
-                String responseLine = null;
-                while ((responseLine = br.readLine()) != null) {
-                    response.append(responseLine.trim());
-                }
-                HashMap<String, Object> map = gson.fromJson(response.toString(), HashMap.class);
-                String imageUrl = (String) ((Map<String, Object>) ((List<Object>) map.get("data")).get(0)).get("url");
-                return Optional.of(imageUrl);
+    @Override
+    public CompletableFuture<Optional<String>> generateImageAsync(String prompt) {
+        return predict(List.of(prompt,SEED,WIDTH,HEIGHT,true,STEPS))
+                .thenApply(this::parseImageUrl)
+                .exceptionally(e -> {
+                    logger.error("Error while generating image", e);
+                    return Optional.empty();
+                });
+    }
+
+    /**
+     * Sends the prompts in the batch form of the predict call: every input is a list with a
+     * value per prompt, and so is the output.
+     */
+    @Override
+    public CompletableFuture<List<Optional<String>>> generateImagesAsync(List<String> prompts) {
+        int size = prompts.size();
+        return predict(List.of(prompts, Collections.nCopies(size, SEED), Collections.nCopies(size, WIDTH),
+                        Collections.nCopies(size, HEIGHT), Collections.nCopies(size, true), Collections.nCopies(size, STEPS)))
+                .thenApply(response -> parseImageUrls(response, size))
+                .exceptionally(e -> {
+                    logger.error("Error while generating a batch of {} images", size, e);
+                    return Collections.nCopies(size, Optional.empty());
+                });
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> predict(List<Object> data) {
+        byte[] body = gson.toJson(new GenerateImageJanusAiDTO(
+                data,
+                null,
+                3,
+                10,
+                "4hc2g6kcoli"
+        )).getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(predictUri)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private Optional<String> parseImageUrl(HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200) {
+            logger.error("Janus responded with {}", response.statusCode());
+            return Optional.empty();
+        }
+        try (InputStreamReader reader = new InputStreamReader(
+                new ByteArrayInputStream(response.body()), StandardCharsets.UTF_8)) {
+            JanusAiResponseDTO dto = gson.fromJson(reader, JanusAiResponseDTO.class);
+            if (dto == null || dto.data() == null || dto.data().isEmpty() || dto.data().get(0) == null) {
+                logger.error("Janus response has no image");
+                return Optional.empty();
             }
-        }catch (IOException e){
-            logger.error("Error while generating image", e);
+            return Optional.ofNullable(dto.data().get(0).url());
+        } catch (JsonParseException | IOException e) {
+            logger.error("Unable to parse Janus response", e);
             return Optional.empty();
         }
     }
 
-    private JanusAiSDK(){
-
+    private List<Optional<String>> parseImageUrls(HttpResponse<byte[]> response, int size) {
+        List<Optional<String>> urls = new ArrayList<>(Collections.nCopies(size, Optional.empty()));
+        if (response.statusCode() != 200) {
+            logger.error("Janus responded with {}", response.statusCode());
+            return urls;
+        }
+        try (InputStreamReader reader = new InputStreamReader(
+                new ByteArrayInputStream(response.body()), StandardCharsets.UTF_8)) {
+            JanusAiBatchResponseDTO dto = gson.fromJson(reader, JanusAiBatchResponseDTO.class);
+            if (dto == null || dto.data() == null || dto.data().isEmpty() || dto.data().get(0) == null) {
+                logger.error("Janus batch response has no images");
+                return urls;
+            }
+            List<JanusAiResponseDTO.JanusAiFileDTO> files = dto.data().get(0);
+            for (int i = 0; i < Math.min(size, files.size()); i++) {
+                if (files.get(i) != null) {
+                    urls.set(i, Optional.ofNullable(files.get(i).url()));
+                }
+            }
+            return urls;
+        } catch (JsonParseException | IOException e) {
+            logger.error("Unable to parse Janus batch response", e);
+            return urls;
+        }
     }
 
     private static volatile ImageGenApi instance;
@@ -69,7 +157,7 @@ public class JanusAiSDK implements ImageGenApi {
         if (instance == null) {
             synchronized (monitor) {
                 if (instance == null) {
-                    instance = new JanusAiSDK();
+                    instance = new JanusAiSDK(JanusSettings.fromSystemProperties());
                 }
             }
         }
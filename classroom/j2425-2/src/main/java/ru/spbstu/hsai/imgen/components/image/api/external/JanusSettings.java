@@ -0,0 +1,34 @@
+package ru.spbstu.hsai.imgen.components.image.api.external;
+
+/**
+ * @param baseUrl          scheme, host and port of the generation service, a local stub in benchmarks
+ * @param connectTimeoutMs how long opening a connection may take
+ * @param requestTimeoutMs how long to wait for the response after the request is sent
+ */
+public record JanusSettings(
+        String baseUrl,
+        long connectTimeoutMs,
+        long requestTimeoutMs
+) {
+    public static final String DEFAULT_BASE_URL = "https://llmhacker-realtime-flux-modified-flux-schnell-for-ja-p.hf.space";
+
+    public JanusSettings {
+        if (baseUrl.endsWith("/")) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+        }
+        if (connectTimeoutMs <= 0 || requestTimeoutMs <= 0) {
+            throw new IllegalArgumentException("Janus timeouts must be positive");
+        }
+    }
+
+    /**
+     * Reads {@code janus.baseUrl}, {@code janus.connectTimeoutMs} and {@code janus.requestTimeoutMs}.
+     */
+    public static JanusSettings fromSystemProperties() {
+        return new JanusSettings(
+                System.getProperty("janus.baseUrl", DEFAULT_BASE_URL),
+                Long.getLong("janus.connectTimeoutMs", 10_000),
+                Long.getLong("janus.requestTimeoutMs", 120_000)
+        );
+    }
+}
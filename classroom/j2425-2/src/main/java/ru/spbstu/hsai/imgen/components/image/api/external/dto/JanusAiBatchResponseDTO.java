@@ -0,0 +1,9 @@
+package ru.spbstu.hsai.imgen.components.image.api.external.dto;
+
+import java.util.List;
+
+// a batched call returns one list per output, holding a value per prompt
+public record JanusAiBatchResponseDTO(
+        List<List<JanusAiResponseDTO.JanusAiFileDTO>> data
+) {
+}
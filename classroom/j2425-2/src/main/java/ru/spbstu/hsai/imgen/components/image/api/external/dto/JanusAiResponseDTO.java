@@ -0,0 +1,9 @@
+package ru.spbstu.hsai.imgen.components.image.api.external.dto;
+
+import java.util.List;
+
+public record JanusAiResponseDTO(
+        List<JanusAiFileDTO> data
+) {
+    public record JanusAiFileDTO(String url) {}
+}
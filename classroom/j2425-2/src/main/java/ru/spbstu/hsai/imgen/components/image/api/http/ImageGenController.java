@@ -1,46 +1,168 @@
 package ru.spbstu.hsai.imgen.components.image.api.http;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import ru.spbstu.hsai.imgen.components.image.api.http.dto.GenerateImageDTO;
-import ru.spbstu.hsai.imgen.components.image.api.http.dto.URLDTO;
+import ru.spbstu.hsai.imgen.components.image.api.http.dto.JobDTO;
+import ru.spbstu.hsai.imgen.components.image.jobs.GenerationJob;
+import ru.spbstu.hsai.imgen.components.image.jobs.GenerationJobQueue;
+import ru.spbstu.hsai.imgen.components.image.jobs.JobStatus;
 import ru.spbstu.hsai.imgen.components.image.service.ImageGenService;
+import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
 import ru.spbstu.hsai.imgen.components.user.service.UserService;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 
 @RestController
 public class ImageGenController {
+    private static final int MAX_PRIORITY = 9;
+    private static final long MAX_WAIT_MS = 60_000;
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     static Logger logger = LoggerFactory.getLogger(ImageGenController.class);
     @Autowired
-    private ImageGenService imageGenService;
+    private GenerationJobQueue jobs;
     @Autowired
     private UserService userService;
+    @Autowired
+    private ImageGenService imageGenService;
 
+    // only queues the generation, the result is fetched from /jobs/{id}; a failed job gives the quota back
     @PostMapping("generate")
-    public @ResponseBody URLDTO generate(
+    public @ResponseBody JobDTO generate(
             @RequestBody GenerateImageDTO request
     ){
         logger.info("Executing generate method" + request);
-        if (userService.getUserBySessionID(request.accessToken()).isPresent()){
-            logger.info("I'm here");
-            Optional<Path> optPath = Optional.empty();
-            try{
-                optPath = imageGenService.generateImage(request.text());
-            }catch (Exception e){
-                logger.error("Error ",e);
+        Optional<UserEntity> user = userService.getUserBySessionID(request.accessToken());
+        if (user.isEmpty()){
+            return new JobDTO(401, null, null, null);
+        }
+        if (!userService.reserveQuota(user.get())){
+            return new JobDTO(402, null, null, null);
+        }
+        int priority = request.priority() == null ? 0 : Math.max(0, Math.min(request.priority(), MAX_PRIORITY));
+        Optional<GenerationJob> job = jobs.submit(request.text(), priority);
+        if (job.isEmpty()){
+            logger.warn("Generation queue is full");
+            userService.refundQuota(user.get());
+            return new JobDTO(503, null, null, null);
+        }
+        job.get().completion().thenAccept(done -> {
+            if (done.getStatus() == JobStatus.FAILED){
+                userService.refundQuota(user.get());
             }
-            if (optPath.isEmpty()){
-                return new URLDTO(500, "");
+        });
+        return mapFromJob(job.get());
+    }
+
+    /**
+     * With {@code waitMs} the response is held until the job finishes or the wait runs out,
+     * without occupying a servlet thread.
+     */
+    @GetMapping(path = "/jobs/{id}")
+    public DeferredResult<JobDTO> job(
+            @PathVariable("id") String id,
+            @RequestParam(required = false) Long waitMs
+    ){
+        Optional<GenerationJob> optJob = jobs.find(id);
+        if (optJob.isEmpty()){
+            return completed(new JobDTO(404, id, null, null));
+        }
+        GenerationJob job = optJob.get();
+        long wait = waitMs == null ? 0 : Math.max(0, Math.min(waitMs, MAX_WAIT_MS));
+        if (wait == 0 || job.getStatus().isFinished()){
+            return completed(mapFromJob(job));
+        }
+        DeferredResult<JobDTO> result = new DeferredResult<>(wait);
+        result.onTimeout(() -> result.setResult(mapFromJob(job)));
+        job.completion().thenAccept(done -> result.setResult(mapFromJob(done)));
+        return result;
+    }
+
+    /**
+     * Serves a generated image by the content hash it is stored under. With Tomcat's sendfile
+     * support the connector sends the file itself; otherwise it is transferred from the file
+     * channel to the response stream.
+     */
+    @GetMapping(path = "/images/{hash}")
+    public void image(
+            @PathVariable("hash") String hash,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        Optional<Path> image = imageGenService.findImage(hash);
+        if (image.isEmpty()){
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(image.get(), StandardOpenOption.READ)) {
+            long size = file.size();
+            response.setContentType(contentType(file));
+            response.setContentLengthLong(size);
+            // the name is the hash of the content, so it never changes
+            response.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))){
+                request.setAttribute(SENDFILE_FILENAME, image.get().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, 0L);
+                request.setAttribute(SENDFILE_END, size);
+                return;
+            }
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size){
+                position += file.transferTo(position, size - position, out);
             }
-            return new URLDTO(200, optPath.get().toString());
         }
-        return new URLDTO(401, "");
+    }
+
+    private static String contentType(FileChannel file) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(12);
+        file.read(magic, 0);
+        byte[] b = magic.array();
+        if (b[0] == (byte) 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G'){
+            return "image/png";
+        }
+        if (b[0] == (byte) 0xFF && b[1] == (byte) 0xD8 && b[2] == (byte) 0xFF){
+            return "image/jpeg";
+        }
+        if (b[0] == 'R' && b[1] == 'I' && b[2] == 'F' && b[3] == 'F' && b[8] == 'W' && b[9] == 'E' && b[10] == 'B' && b[11] == 'P'){
+            return "image/webp";
+        }
+        return "application/octet-stream";
+    }
+
+    private static DeferredResult<JobDTO> completed(JobDTO dto){
+        DeferredResult<JobDTO> result = new DeferredResult<>();
+        result.setResult(dto);
+        return result;
+    }
+
+    private JobDTO mapFromJob(GenerationJob job){
+        int code = switch (job.getStatus()){
+            case QUEUED, RUNNING -> 202;
+            case DONE -> 200;
+            case FAILED -> 500;
+        };
+        return new JobDTO(
+                code,
+                job.getId(),
+                job.getStatus().name(),
+                job.getResult().map(Object::toString).orElse(null)
+        );
     }
 }
@@ -1,3 +1,5 @@
 package ru.spbstu.hsai.imgen.components.image.api.http.dto;
 
-public record GenerateImageDTO(String accessToken, String text){}
+import ru.spbstu.hsai.imgen.components.session.AuthenticatedRequest;
+
+public record GenerateImageDTO(String accessToken, String text, Integer priority) implements AuthenticatedRequest {}
@@ -0,0 +1,3 @@
+package ru.spbstu.hsai.imgen.components.image.api.http.dto;
+
+public record JobDTO(Integer code, String jobId, String status, String url){}
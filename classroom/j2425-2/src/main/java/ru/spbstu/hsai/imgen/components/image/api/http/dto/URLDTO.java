@@ -1,3 +0,0 @@
-package ru.spbstu.hsai.imgen.components.image.api.http.dto;
-
-public record URLDTO(Integer code, String url){}
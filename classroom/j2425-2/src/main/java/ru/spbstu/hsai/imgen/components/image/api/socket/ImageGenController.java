@@ -1,28 +1,34 @@
 package ru.spbstu.hsai.imgen.components.image.api.socket;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.spbstu.hsai.imgen.components.image.api.socket.dto.GenerateImageDTO;
+import ru.spbstu.hsai.imgen.components.image.api.socket.dto.ImageRequestDTO;
 import ru.spbstu.hsai.imgen.components.image.api.socket.dto.URLDTO;
 import ru.spbstu.hsai.imgen.components.image.service.ImageGenService;
+import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
 import ru.spbstu.hsai.imgen.components.user.service.UserService;
+import ru.spbstu.json.JsonCodec;
+import ru.spbstu.json.gson.JsonCodecs;
 
 import java.nio.file.Path;
 import java.util.Optional;
 
 public class ImageGenController {
-    static Gson gson = new GsonBuilder().serializeNulls().create();
+    static JsonCodec codec = JsonCodecs.fromSystemProperties();
     static Logger logger = LoggerFactory.getLogger(ImageGenController.class);
     private ImageGenService imageGenService = ImageGenService.getInstance();
     private UserService userService = UserService.getInstance();
 
-    public String generate(String body){
-        GenerateImageDTO bodyEntity = gson.fromJson(body, GenerateImageDTO.class);
+    public URLDTO generate(String body){
+        GenerateImageDTO bodyEntity = codec.fromJson(body, GenerateImageDTO.class);
         logger.info("Executing generate method" + bodyEntity.toString());
-        if (userService.getUserBySessionID(bodyEntity.accessToken()).isPresent()){
+        Optional<UserEntity> user = userService.getUserBySessionID(bodyEntity.accessToken());
+        if (user.isPresent()){
             logger.info("I'm here");
+            if (!userService.reserveQuota(user.get())){
+                return new URLDTO(402, "");
+            }
             Optional<Path> optPath = Optional.empty();
             try{
                 optPath = imageGenService.generateImage(bodyEntity.text());
@@ -30,11 +36,21 @@ public class ImageGenController {
                 logger.error("Error ",e);
             }
             if (optPath.isEmpty()){
-                return gson.toJson(new URLDTO(500, ""));
+                userService.refundQuota(user.get());
+                return new URLDTO(500, "");
             }
-            return gson.toJson(new URLDTO(200, optPath.get().toString()));
+            return new URLDTO(200, optPath.get().toString());
+        }
+        return new URLDTO(401, "");
+    }
+
+    // /image {"hash":"<sha256>"}, the hash is the file name of a generated image
+    public Optional<Path> findImage(String body){
+        ImageRequestDTO request = codec.fromJson(body, ImageRequestDTO.class);
+        if (request == null || request.hash() == null){
+            return Optional.empty();
         }
-        return gson.toJson(new URLDTO(401, ""));
+        return imageGenService.findImage(request.hash());
     }
 
     private ImageGenController(){
@@ -0,0 +1,3 @@
+package ru.spbstu.hsai.imgen.components.image.api.socket.dto;
+
+public record ImageRequestDTO(String hash){}
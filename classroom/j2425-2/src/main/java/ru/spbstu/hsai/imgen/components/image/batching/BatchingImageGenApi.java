@@ -0,0 +1,166 @@
+package ru.spbstu.hsai.imgen.components.image.batching;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.hsai.imgen.components.image.service.BatchImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.service.ImageGenApi;
+import ru.spbstu.hsai.imgen.components.metrics.Histogram;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects prompts and sends them to the backend as one batched call. A batch is sent when
+ * it reaches {@code maxBatchSize} or when its first prompt has waited {@code maxWaitMs};
+ * each caller gets the result for its own prompt. A failed batch fails all its prompts.
+ */
+public class BatchingImageGenApi implements ImageGenApi, Closeable {
+    static Logger logger = LoggerFactory.getLogger(BatchingImageGenApi.class);
+
+    private final BatchImageGenApi delegate;
+    private final BatchingSettings settings;
+    private final ScheduledExecutorService scheduler;
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    // number of the batch being collected, so a late timer does not cut the next batch short
+    private long batchNumber;
+    private boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder prompts = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final Histogram batchSizes;
+    private final Histogram waits = new Histogram(1, 2, 5, 10, 20, 50, 100, 200, 500, 1000);
+
+    private record Pending(String prompt, long enqueuedAt, CompletableFuture<Optional<String>> result) {}
+
+    public BatchingImageGenApi(BatchImageGenApi delegate, BatchingSettings settings) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.batchSizes = Histogram.powersOfTwo(settings.maxBatchSize());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "image-api-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String parameters() {
+        return delegate.parameters();
+    }
+
+    @Override
+    public Optional<String> generateImage(String prompt) {
+        return generateImageAsync(prompt).join();
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> generateImageAsync(String prompt) {
+        Pending request = new Pending(prompt, System.nanoTime(), new CompletableFuture<>());
+        List<Pending> full = null;
+        synchronized (lock) {
+            if (closed) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+            pending.add(request);
+            if (pending.size() >= settings.maxBatchSize()) {
+                full = take();
+            } else if (pending.size() == 1) {
+                long batch = batchNumber;
+                scheduler.schedule(() -> sendIfCurrent(batch), settings.maxWaitMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return request.result();
+    }
+
+    private List<Pending> take() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>(settings.maxBatchSize());
+        batchNumber++;
+        return batch;
+    }
+
+    private void sendIfCurrent(long batch) {
+        List<Pending> expired;
+        synchronized (lock) {
+            if (batch != batchNumber || pending.isEmpty()) {
+                return;
+            }
+            expired = take();
+        }
+        send(expired);
+    }
+
+    private void send(List<Pending> batch) {
+        long now = System.nanoTime();
+        List<String> batchPrompts = new ArrayList<>(batch.size());
+        for (Pending request : batch) {
+            waits.record(TimeUnit.NANOSECONDS.toMillis(now - request.enqueuedAt()));
+            batchPrompts.add(request.prompt());
+        }
+        batchSizes.record(batch.size());
+        batches.increment();
+        prompts.add(batch.size());
+
+        CompletableFuture<List<Optional<String>>> results;
+        try {
+            // a lone prompt goes the regular way, so a size of 1 works with any backend
+            results = batch.size() == 1
+                    ? delegate.generateImageAsync(batchPrompts.get(0)).thenApply(List::of)
+                    : delegate.generateImagesAsync(batchPrompts);
+        } catch (RuntimeException e) {
+            results = CompletableFuture.failedFuture(e);
+        }
+        results.whenComplete((images, error) -> {
+            if (error != null || images.size() != batch.size()) {
+                failedBatches.increment();
+                logger.error("Batch of {} prompts failed", batch.size(), error);
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                boolean answered = error == null && i < images.size() && images.get(i) != null;
+                batch.get(i).result().complete(answered ? images.get(i) : Optional.empty());
+            }
+        });
+    }
+
+    public BatchingStats stats() {
+        int waiting;
+        synchronized (lock) {
+            waiting = pending.size();
+        }
+        return new BatchingStats(
+                waiting,
+                settings.maxBatchSize(),
+                settings.maxWaitMs(),
+                batches.sum(),
+                prompts.sum(),
+                failedBatches.sum(),
+                batchSizes.snapshot(),
+                waits.snapshot()
+        );
+    }
+
+    @Override
+    public void close() {
+        List<Pending> rest;
+        synchronized (lock) {
+            closed = true;
+            rest = take();
+        }
+        scheduler.shutdownNow();
+        if (!rest.isEmpty()) {
+            send(rest);
+        }
+    }
+}
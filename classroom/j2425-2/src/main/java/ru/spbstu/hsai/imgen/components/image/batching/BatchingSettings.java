@@ -0,0 +1,20 @@
+package ru.spbstu.hsai.imgen.components.image.batching;
+
+/**
+ * @param maxBatchSize prompts sent in one upstream call, 1 turns batching off
+ * @param maxWaitMs    how long the first prompt of a batch waits for others to join
+ */
+public record BatchingSettings(
+        int maxBatchSize,
+        long maxWaitMs
+) {
+    public BatchingSettings {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+        }
+    }
+
+    public static BatchingSettings defaults() {
+        return new BatchingSettings(1, 50);
+    }
+}
@@ -0,0 +1,15 @@
+package ru.spbstu.hsai.imgen.components.image.batching;
+
+import ru.spbstu.hsai.imgen.components.metrics.HistogramSnapshot;
+
+public record BatchingStats(
+        int pending,
+        int maxBatchSize,
+        long maxWaitMs,
+        long batches,
+        long prompts,
+        long failedBatches,
+        HistogramSnapshot batchSize,
+        HistogramSnapshot waitMs
+) {
+}
@@ -0,0 +1,9 @@
+package ru.spbstu.hsai.imgen.components.image.cache;
+
+import java.nio.file.Path;
+
+/**
+ * A fully written image file together with the SHA-256 of its content.
+ */
+public record ImageFile(Path path, String contentHash, long size) {
+}
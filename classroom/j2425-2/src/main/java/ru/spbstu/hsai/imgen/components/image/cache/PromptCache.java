@@ -0,0 +1,311 @@
+package ru.spbstu.hsai.imgen.components.image.cache;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Generated images keyed by the normalized prompt and the generation parameters.
+ * Image files are named after the SHA-256 of their content, so identical results of
+ * different prompts share one file. The index is an LRU bounded by entry count and total
+ * size; it is written to {@code index} in the cache directory and reloaded on start.
+ * A file no prompt refers to any more is deleted one flush interval later, not at once:
+ * a path returned by {@link #get(String)} or {@link #file(String)} just before may still be
+ * about to be opened.
+ */
+public class PromptCache implements Closeable {
+    private static final String INDEX_FILE = "index";
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    static Logger logger = LoggerFactory.getLogger(PromptCache.class);
+
+    private final PromptCacheSettings settings;
+    // access-ordered: iteration starts from the least recently used prompt
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    // content hash -> number of prompts pointing to that file
+    private final Map<String, Integer> references = new HashMap<>();
+    // content hash -> System.nanoTime() when the last prompt pointing to that file was dropped
+    private final Map<String, Long> released = new HashMap<>();
+    private final ScheduledExecutorService flusher;
+    private long bytes;
+    private boolean dirty;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    private record Entry(String contentHash, long size) {}
+
+    public PromptCache(PromptCacheSettings settings) throws IOException {
+        this.settings = settings;
+        Files.createDirectories(settings.directory());
+        load();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "prompt-cache-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::maintain,
+                settings.flushIntervalMs(), settings.flushIntervalMs(), TimeUnit.MILLISECONDS);
+        logger.info("Prompt cache in {}: {} entries, {} bytes", settings.directory(), index.size(), bytes);
+    }
+
+    /**
+     * Cache key of a prompt: whitespace and case differences do not produce a new key,
+     * any change of the generation parameters does.
+     */
+    public static String key(String prompt, String parameters) {
+        String normalized = Normalizer.normalize(prompt, Normalizer.Form.NFC)
+                .strip()
+                .replaceAll("\\s+", " ")
+                .toLowerCase(Locale.ROOT);
+        MessageDigest digest = sha256();
+        digest.update(normalized.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(parameters.getBytes(StandardCharsets.UTF_8));
+        return Hex.toHexString(digest.digest());
+    }
+
+    public Optional<Path> get(String key) {
+        synchronized (index) {
+            Entry entry = index.get(key);
+            if (entry != null) {
+                Path path = blob(entry.contentHash());
+                if (Files.exists(path)) {
+                    hits.increment();
+                    dirty = true;
+                    return Optional.of(path);
+                }
+                logger.warn("Cached image {} is missing, dropping the entry", path);
+                remove(key);
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * A file in the cache directory to download into, so it can later be moved into place
+     * with {@link #put(String, ImageFile)}.
+     */
+    public Path newTempFile() throws IOException {
+        return Files.createTempFile(settings.directory(), "download", ".tmp");
+    }
+
+    /**
+     * Moves a downloaded file into the cache under its content hash and remembers it for the key.
+     * If the same content is already cached the file is deleted instead.
+     */
+    public Path put(String key, ImageFile file) throws IOException {
+        Path target = blob(file.contentHash());
+        try {
+            synchronized (index) {
+                // released first, so a replaced entry cannot delete the file it is replaced with
+                remove(key);
+                if (Files.exists(target)) {
+                    deduplicated.increment();
+                } else {
+                    Files.move(file.path(), target, StandardCopyOption.ATOMIC_MOVE);
+                }
+                index.put(key, new Entry(file.contentHash(), file.size()));
+                references.merge(file.contentHash(), 1, Integer::sum);
+                released.remove(file.contentHash());
+                bytes += file.size();
+                stored.increment();
+                dirty = true;
+                evictOverflow();
+                return target;
+            }
+        } finally {
+            Files.deleteIfExists(file.path());
+        }
+    }
+
+    /**
+     * The cached image with the given content hash, if some prompt still refers to it.
+     */
+    public Optional<Path> file(String contentHash) {
+        if (!CONTENT_HASH.matcher(contentHash).matches()) {
+            return Optional.empty();
+        }
+        synchronized (index) {
+            if (!references.containsKey(contentHash)) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(blob(contentHash));
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> eldest = index.entrySet().iterator();
+        // the newest entry is never evicted, even if it alone exceeds the byte limit
+        while (index.size() > 1 && (index.size() > settings.maxEntries() || bytes > settings.maxBytes())) {
+            Map.Entry<String, Entry> entry = eldest.next();
+            eldest.remove();
+            release(entry.getValue());
+            evicted.increment();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = index.remove(key);
+        if (entry != null) {
+            release(entry);
+            dirty = true;
+        }
+    }
+
+    // the image file is deleted once no prompt has referred to it for a flush interval
+    private void release(Entry entry) {
+        bytes -= entry.size();
+        if (references.merge(entry.contentHash(), -1, Integer::sum) <= 0) {
+            references.remove(entry.contentHash());
+            released.put(entry.contentHash(), System.nanoTime());
+        }
+    }
+
+    /**
+     * Deletes the files released at least {@code graceNanos} ago. Runs under the index lock,
+     * so a concurrent {@link #put(String, ImageFile)} never deduplicates onto a file being deleted.
+     */
+    void deleteReleased(long graceNanos) {
+        long now = System.nanoTime();
+        synchronized (index) {
+            Iterator<Map.Entry<String, Long>> iterator = released.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (now - entry.getValue() < graceNanos) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(blob(entry.getKey()));
+                    iterator.remove();
+                } catch (IOException e) {
+                    // retried on the next run, e.g. while the file is still open where that blocks deletion
+                    logger.warn("Unable to delete cached image {}", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    private Path blob(String contentHash) {
+        return settings.directory().resolve(contentHash);
+    }
+
+    // one "<key> <content hash> <size>" line per entry, least recently used first
+    private void load() throws IOException {
+        Path file = settings.directory().resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            if (parts.length != 3 || !Files.exists(blob(parts[1]))) {
+                continue;
+            }
+            Entry entry = new Entry(parts[1], Long.parseLong(parts[2]));
+            index.put(parts[0], entry);
+            references.merge(entry.contentHash(), 1, Integer::sum);
+            bytes += entry.size();
+        }
+        evictOverflow();
+    }
+
+    public void flush() throws IOException {
+        StringBuilder content = new StringBuilder();
+        synchronized (index) {
+            if (!dirty) {
+                return;
+            }
+            for (Map.Entry<String, Entry> entry : index.entrySet()) {
+                content.append(entry.getKey()).append(' ')
+                        .append(entry.getValue().contentHash()).append(' ')
+                        .append(entry.getValue().size()).append('\n');
+            }
+            dirty = false;
+        }
+        Path temp = settings.directory().resolve(INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(content.toString());
+        }
+        Files.move(temp, settings.directory().resolve(INDEX_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void maintain() {
+        flushQuietly();
+        deleteReleased(TimeUnit.MILLISECONDS.toNanos(settings.flushIntervalMs()));
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.error("Unable to write prompt cache index", e);
+        }
+    }
+
+    public PromptCacheStats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int entries;
+        long size;
+        synchronized (index) {
+            entries = index.size();
+            size = bytes;
+        }
+        return new PromptCacheStats(
+                entries,
+                settings.maxEntries(),
+                size,
+                settings.maxBytes(),
+                hitCount,
+                missCount,
+                hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount),
+                stored.sum(),
+                deduplicated.sum(),
+                evicted.sum()
+        );
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        flushQuietly();
+        deleteReleased(0);
+    }
+}
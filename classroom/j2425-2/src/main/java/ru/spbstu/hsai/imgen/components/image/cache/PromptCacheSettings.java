@@ -0,0 +1,23 @@
+package ru.spbstu.hsai.imgen.components.image.cache;
+
+import java.nio.file.Path;
+
+/**
+ * @param directory       where the images and the index file are kept
+ * @param maxEntries      number of cached prompts above which the least recently used one is dropped
+ * @param maxBytes        total size of the cached images above which the least recently used ones are dropped
+ * @param flushIntervalMs how often a changed index is written to disk; also how long a file no prompt refers to
+ *                        is kept before it is deleted
+ */
+public record PromptCacheSettings(
+        Path directory,
+        int maxEntries,
+        long maxBytes,
+        long flushIntervalMs
+) {
+    public PromptCacheSettings {
+        if (maxEntries <= 0 || maxBytes <= 0 || flushIntervalMs <= 0) {
+            throw new IllegalArgumentException("Cache bounds and flush interval must be positive");
+        }
+    }
+}
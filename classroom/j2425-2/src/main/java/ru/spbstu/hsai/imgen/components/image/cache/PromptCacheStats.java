@@ -0,0 +1,15 @@
+package ru.spbstu.hsai.imgen.components.image.cache;
+
+public record PromptCacheStats(
+        Integer entries,
+        Integer maxEntries,
+        Long bytes,
+        Long maxBytes,
+        Long hits,
+        Long misses,
+        Double hitRate,
+        Long stored,
+        Long deduplicated,
+        Long evicted
+) {
+}
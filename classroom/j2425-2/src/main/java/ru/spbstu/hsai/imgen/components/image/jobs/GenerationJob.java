@@ -0,0 +1,79 @@
+package ru.spbstu.hsai.imgen.components.image.jobs;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+public class GenerationJob implements Comparable<GenerationJob> {
+    private final String id;
+    private final String prompt;
+    private final int priority;
+    private final long sequence;
+    private final long createdAt = System.currentTimeMillis();
+    private final CompletableFuture<GenerationJob> completion = new CompletableFuture<>();
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile Path result;
+    private volatile long finishedAt;
+
+    GenerationJob(String id, String prompt, int priority, long sequence) {
+        this.id = id;
+        this.prompt = prompt;
+        this.priority = priority;
+        this.sequence = sequence;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public Optional<Path> getResult() {
+        return Optional.ofNullable(result);
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Completes with the job itself once it is done or failed.
+     */
+    public CompletableFuture<GenerationJob> completion() {
+        return completion;
+    }
+
+    void start() {
+        status = JobStatus.RUNNING;
+    }
+
+    void finish(Optional<Path> path) {
+        result = path.orElse(null);
+        finishedAt = System.currentTimeMillis();
+        status = path.isPresent() ? JobStatus.DONE : JobStatus.FAILED;
+        completion.complete(this);
+    }
+
+    // higher priority first, submission order within the same priority
+    @Override
+    public int compareTo(GenerationJob other) {
+        if (priority != other.priority) {
+            return Integer.compare(other.priority, priority);
+        }
+        return Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,146 @@
+package ru.spbstu.hsai.imgen.components.image.jobs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Image generations run as jobs on a fixed set of worker threads, so request threads only
+ * enqueue and return. Waiting jobs are ordered by priority; once the queue holds
+ * {@code queueCapacity} jobs new submissions are rejected. Finished jobs can be polled
+ * for {@code retentionMs} and are forgotten afterwards.
+ */
+public class GenerationJobQueue implements Closeable {
+    static Logger logger = LoggerFactory.getLogger(GenerationJobQueue.class);
+
+    private final JobSettings settings;
+    private final Function<String, Optional<Path>> generator;
+    private final PriorityBlockingQueue<GenerationJob> queue = new PriorityBlockingQueue<>();
+    private final ConcurrentHashMap<String, GenerationJob> jobs = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final ScheduledExecutorService cleaner;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder queueWaitMs = new LongAdder();
+
+    public GenerationJobQueue(JobSettings settings, Function<String, Optional<Path>> generator) {
+        this.settings = settings;
+        this.generator = generator;
+        for (int i = 0; i < settings.workers(); i++) {
+            Thread worker = new Thread(this::runJobs, "generation-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "generation-job-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1_000, settings.retentionMs() / 4);
+        cleaner.scheduleWithFixedDelay(this::forgetFinished, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a generation. Returns empty when the queue is full.
+     */
+    public Optional<GenerationJob> submit(String prompt, int priority) {
+        if (closed || queued.incrementAndGet() > settings.queueCapacity()) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return Optional.empty();
+        }
+        GenerationJob job = new GenerationJob(UUID.randomUUID().toString(), prompt, priority, sequence.incrementAndGet());
+        jobs.put(job.getId(), job);
+        queue.add(job);
+        submitted.increment();
+        return Optional.of(job);
+    }
+
+    public Optional<GenerationJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void runJobs() {
+        while (!closed) {
+            GenerationJob job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queued.decrementAndGet();
+            running.incrementAndGet();
+            queueWaitMs.add(System.currentTimeMillis() - job.getCreatedAt());
+            job.start();
+            Optional<Path> result = Optional.empty();
+            try {
+                result = generator.apply(job.getPrompt());
+            } catch (RuntimeException e) {
+                logger.error("Generation job {} failed", job.getId(), e);
+            } finally {
+                running.decrementAndGet();
+                (result.isPresent() ? completed : failed).increment();
+                job.finish(result);
+            }
+        }
+    }
+
+    private void forgetFinished() {
+        long deadline = System.currentTimeMillis() - settings.retentionMs();
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getFinishedAt() < deadline);
+    }
+
+    public JobQueueStats stats() {
+        long started = completed.sum() + failed.sum() + running.get();
+        return new JobQueueStats(
+                queued.get(),
+                settings.queueCapacity(),
+                running.get(),
+                settings.workers(),
+                jobs.size(),
+                submitted.sum(),
+                rejected.sum(),
+                completed.sum(),
+                failed.sum(),
+                started == 0 ? 0 : (double) queueWaitMs.sum() / started
+        );
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        cleaner.shutdownNow();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        GenerationJob job;
+        while ((job = queue.poll()) != null) {
+            queued.decrementAndGet();
+            failed.increment();
+            job.finish(Optional.empty());
+        }
+    }
+}
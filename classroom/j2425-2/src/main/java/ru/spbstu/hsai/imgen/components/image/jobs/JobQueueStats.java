@@ -0,0 +1,15 @@
+package ru.spbstu.hsai.imgen.components.image.jobs;
+
+public record JobQueueStats(
+        Integer queued,
+        Integer queueCapacity,
+        Integer running,
+        Integer workers,
+        Integer tracked,
+        Long submitted,
+        Long rejected,
+        Long completed,
+        Long failed,
+        Double avgQueueWaitMs
+) {
+}
@@ -0,0 +1,18 @@
+package ru.spbstu.hsai.imgen.components.image.jobs;
+
+/**
+ * @param workers       threads running generations
+ * @param queueCapacity jobs waiting for a worker above which new jobs are rejected
+ * @param retentionMs   how long a finished job can still be polled
+ */
+public record JobSettings(
+        int workers,
+        int queueCapacity,
+        long retentionMs
+) {
+    public JobSettings {
+        if (workers <= 0 || queueCapacity <= 0 || retentionMs <= 0) {
+            throw new IllegalArgumentException("Job workers, queue capacity and retention must be positive");
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.spbstu.hsai.imgen.components.image.jobs;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == DONE || this == FAILED;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Count-based circuit breaker. While closed every call is let through and its outcome is
+ * recorded in a ring of the last {@code windowSize} calls; once the failure rate reaches the
+ * threshold the circuit opens and rejects calls. After {@code openDurationMs} it turns
+ * half-open and lets a few probe calls through: if they all succeed it closes, the first
+ * failure opens it again.
+ */
+public class CircuitBreaker {
+    static Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final ResilienceSettings settings;
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+    private long generation;
+
+    private final Map<State, Long> permitted = new EnumMap<>(State.class);
+    private final Map<State, Long> transitions = new EnumMap<>(State.class);
+    private long rejected;
+
+    public CircuitBreaker(ResilienceSettings settings) {
+        this.settings = settings;
+        this.outcomes = new boolean[settings.windowSize()];
+        for (State s : State.values()) {
+            permitted.put(s, 0L);
+            transitions.put(s, 0L);
+        }
+    }
+
+    /**
+     * Returns a permit when a call may be made now, {@code -1} otherwise. The outcome of
+     * every permitted call is reported with {@link #record} and that permit.
+     */
+    public synchronized long tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= settings.openDurationMs()) {
+            transition(State.HALF_OPEN);
+        }
+        boolean allowed = switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> probesStarted < settings.halfOpenProbes();
+        };
+        if (!allowed) {
+            rejected++;
+            return -1;
+        }
+        if (state == State.HALF_OPEN) {
+            probesStarted++;
+        }
+        permitted.merge(state, 1L, Long::sum);
+        return generation;
+    }
+
+    public synchronized void record(long permit, boolean success) {
+        // calls started before the last state change say nothing about the current state
+        if (permit != generation) {
+            return;
+        }
+        switch (state) {
+            case CLOSED -> {
+                if (recorded == outcomes.length) {
+                    if (!outcomes[next]) {
+                        failures--;
+                    }
+                } else {
+                    recorded++;
+                }
+                outcomes[next] = success;
+                if (!success) {
+                    failures++;
+                }
+                next = (next + 1) % outcomes.length;
+                if (recorded >= settings.minimumCalls()
+                        && (double) failures / recorded >= settings.failureRateThreshold()) {
+                    transition(State.OPEN);
+                }
+            }
+            case HALF_OPEN -> {
+                if (!success) {
+                    transition(State.OPEN);
+                } else if (++probesSucceeded >= settings.halfOpenProbes()) {
+                    transition(State.CLOSED);
+                }
+            }
+            case OPEN -> {
+            }
+        }
+    }
+
+    private void transition(State target) {
+        logger.warn("Circuit breaker {} -> {}", state, target);
+        state = target;
+        generation++;
+        transitions.merge(target, 1L, Long::sum);
+        switch (target) {
+            case OPEN -> openedAt = System.currentTimeMillis();
+            case HALF_OPEN -> {
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            case CLOSED -> {
+                recorded = 0;
+                next = 0;
+                failures = 0;
+            }
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    synchronized Map<State, Long> permittedCalls() {
+        return new EnumMap<>(permitted);
+    }
+
+    synchronized Map<State, Long> transitions() {
+        return new EnumMap<>(transitions);
+    }
+
+    synchronized long rejectedCalls() {
+        return rejected;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+import java.util.Arrays;
+
+/**
+ * Percentile of the latest latencies, recomputed every few samples rather than on every read.
+ */
+class LatencyTracker {
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final long[] samples;
+    private int count;
+    private int next;
+    private int sinceRecompute;
+    private long p95 = -1;
+
+    LatencyTracker(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (++sinceRecompute >= RECOMPUTE_EVERY || p95 < 0) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+            sinceRecompute = 0;
+        }
+    }
+
+    /**
+     * Returns {@code -1} until the first sample.
+     */
+    synchronized long p95() {
+        return p95;
+    }
+}
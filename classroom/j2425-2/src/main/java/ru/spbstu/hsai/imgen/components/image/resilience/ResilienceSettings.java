@@ -0,0 +1,47 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+/**
+ * @param failureRateThreshold share of failed calls in the window (0..1) that opens the circuit
+ * @param windowSize           number of most recent calls the failure rate is computed over
+ * @param minimumCalls         calls needed in the window before the circuit may open
+ * @param openDurationMs       how long an open circuit rejects calls before probing
+ * @param halfOpenProbes       calls let through while half-open; all must succeed to close again
+ * @param maxAttempts          attempts per request including the first one
+ * @param baseBackoffMs        backoff before the first retry, doubled for every further one
+ * @param maxBackoffMs         upper bound of the backoff
+ * @param retryBudgetRatio     retries allowed per request on average, e.g. 0.1 for one in ten
+ * @param minRetriesPerSecond  retries always allowed regardless of traffic
+ * @param hedgingEnabled       whether a second request is sent when the first one is slow
+ * @param hedgeMinDelayMs      lower bound of the hedging delay, which otherwise follows the p95 latency
+ */
+public record ResilienceSettings(
+        double failureRateThreshold,
+        int windowSize,
+        int minimumCalls,
+        long openDurationMs,
+        int halfOpenProbes,
+        int maxAttempts,
+        long baseBackoffMs,
+        long maxBackoffMs,
+        double retryBudgetRatio,
+        int minRetriesPerSecond,
+        boolean hedgingEnabled,
+        long hedgeMinDelayMs
+) {
+    public ResilienceSettings {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Failure rate threshold must be in (0, 1]: " + failureRateThreshold);
+        }
+        if (windowSize <= 0 || minimumCalls <= 0 || halfOpenProbes <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Window size, minimum calls, probes and attempts must be positive");
+        }
+        if (openDurationMs <= 0 || baseBackoffMs < 0 || maxBackoffMs < baseBackoffMs || retryBudgetRatio < 0
+                || minRetriesPerSecond < 0 || hedgeMinDelayMs <= 0) {
+            throw new IllegalArgumentException("Invalid resilience timings or retry budget");
+        }
+    }
+
+    public static ResilienceSettings defaults() {
+        return new ResilienceSettings(0.5, 20, 10, 30_000, 3, 3, 200, 5_000, 0.1, 1, false, 1_000);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+public record ResilienceStats(
+        String state,
+        Long callsClosed,
+        Long callsHalfOpen,
+        Long rejectedOpen,
+        Long opened,
+        Long halfOpened,
+        Long closed,
+        Long successes,
+        Long failures,
+        Long retries,
+        Long retriesDenied,
+        Long hedges,
+        Long hedgeWins,
+        Long p95LatencyMs
+) {
+}
@@ -0,0 +1,190 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.hsai.imgen.components.image.service.ImageGenApi;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Guards an {@link ImageGenApi}: calls go through a {@link CircuitBreaker}, failed calls are
+ * retried with jittered exponential backoff while the {@link RetryBudget} allows it, and with
+ * hedging enabled a second call is started when the first one is slower than the recent p95.
+ * An empty result counts as a failure, as that is how the upstream reports errors.
+ */
+public class ResilientImageGenApi implements ImageGenApi, Closeable {
+    static Logger logger = LoggerFactory.getLogger(ResilientImageGenApi.class);
+
+    private final ImageGenApi delegate;
+    private final ResilienceSettings settings;
+    private final CircuitBreaker breaker;
+    private final RetryBudget retryBudget;
+    private final LatencyTracker latencies = new LatencyTracker(512);
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesDenied = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public ResilientImageGenApi(ImageGenApi delegate, ResilienceSettings settings) {
+        this.delegate = delegate;
+        this.settings = settings;
+        this.breaker = new CircuitBreaker(settings);
+        this.retryBudget = new RetryBudget(settings.retryBudgetRatio(), settings.minRetriesPerSecond());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "image-api-resilience");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String parameters() {
+        return delegate.parameters();
+    }
+
+    @Override
+    public Optional<String> generateImage(String prompt) {
+        return generateImageAsync(prompt).join();
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> generateImageAsync(String prompt) {
+        retryBudget.onRequest();
+        return attempt(prompt, 1);
+    }
+
+    private CompletableFuture<Optional<String>> attempt(String prompt, int attempt) {
+        long permit = breaker.tryAcquire();
+        if (permit < 0) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        long start = System.nanoTime();
+        return callWithHedge(prompt)
+                .handle((result, error) -> {
+                    boolean success = error == null && result.isPresent();
+                    breaker.record(permit, success);
+                    if (success) {
+                        successes.increment();
+                        latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    failures.increment();
+                    if (error != null) {
+                        logger.warn("Image generation attempt {} failed", attempt, error);
+                    }
+                    return retry(prompt, attempt);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Optional<String>> retry(String prompt, int attempt) {
+        if (attempt >= settings.maxAttempts()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        if (!retryBudget.tryRetry()) {
+            retriesDenied.increment();
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        retries.increment();
+        CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            attempt(prompt, attempt + 1).whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        }, backoffMs(attempt), TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    // full jitter: uniformly random up to the exponential bound
+    private long backoffMs(int attempt) {
+        long bound = Math.min(settings.maxBackoffMs(), settings.baseBackoffMs() << Math.min(attempt - 1, 20));
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * Completes with the first successful result of the call and its hedge, or with the
+     * outcome of the last one to finish when neither succeeds.
+     */
+    private CompletableFuture<Optional<String>> callWithHedge(String prompt) {
+        CompletableFuture<Optional<String>> primary = delegate.generateImageAsync(prompt);
+        long p95 = latencies.p95();
+        if (!settings.hedgingEnabled() || p95 < 0) {
+            return primary;
+        }
+        CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        primary.whenComplete(settle(result, outstanding, false));
+        scheduler.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedges.increment();
+            delegate.generateImageAsync(prompt).whenComplete(settle(result, outstanding, true));
+        }, Math.max(settings.hedgeMinDelayMs(), p95), TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    private BiConsumer<Optional<String>, Throwable> settle(
+            CompletableFuture<Optional<String>> result, AtomicInteger outstanding, boolean hedge) {
+        return (value, error) -> {
+            boolean last = outstanding.decrementAndGet() == 0;
+            if (error == null && value.isPresent()) {
+                if (result.complete(value) && hedge) {
+                    hedgeWins.increment();
+                }
+            } else if (last) {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            }
+        };
+    }
+
+    public ResilienceStats stats() {
+        Map<CircuitBreaker.State, Long> permitted = breaker.permittedCalls();
+        Map<CircuitBreaker.State, Long> transitions = breaker.transitions();
+        return new ResilienceStats(
+                breaker.state().name(),
+                permitted.get(CircuitBreaker.State.CLOSED),
+                permitted.get(CircuitBreaker.State.HALF_OPEN),
+                breaker.rejectedCalls(),
+                transitions.get(CircuitBreaker.State.OPEN),
+                transitions.get(CircuitBreaker.State.HALF_OPEN),
+                transitions.get(CircuitBreaker.State.CLOSED),
+                successes.sum(),
+                failures.sum(),
+                retries.sum(),
+                retriesDenied.sum(),
+                hedges.sum(),
+                hedgeWins.sum(),
+                latencies.p95()
+        );
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,43 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+/**
+ * Limits retries to a share of the traffic so that a struggling upstream is not hit by
+ * a multiple of the normal load. Every request deposits {@code ratio} of a retry token,
+ * every retry takes one whole token; a small per-second allowance keeps retries possible
+ * at low traffic.
+ */
+class RetryBudget {
+    private final double ratio;
+    private final int minPerSecond;
+    private final double maxBalance;
+    private double balance;
+    private long lastRefill = System.nanoTime();
+
+    RetryBudget(double ratio, int minPerSecond) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        // at most what ten seconds of allowance or a hundred requests would deposit
+        this.maxBalance = Math.max(1, minPerSecond * 10 + ratio * 100);
+        this.balance = Math.min(maxBalance, minPerSecond);
+    }
+
+    synchronized void onRequest() {
+        refill();
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    synchronized boolean tryRetry() {
+        refill();
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        balance = Math.min(maxBalance, balance + (now - lastRefill) / 1e9 * minPerSecond);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,112 @@
+package ru.spbstu.hsai.imgen.components.image.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.hsai.imgen.components.image.service.BatchImageGenApi;
+import ru.spbstu.hsai.imgen.components.metrics.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One upstream endpoint with its load, latency and health as seen by the router.
+ */
+class Backend {
+    static Logger logger = LoggerFactory.getLogger(Backend.class);
+
+    private final String name;
+    private final BatchImageGenApi api;
+    private final RoutingSettings settings;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntil;
+    private double ewmaMs;
+    private long ewmaUpdatedAt = System.nanoTime();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+    private final Histogram latencies = new Histogram(50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000);
+
+    Backend(String name, BatchImageGenApi api, RoutingSettings settings) {
+        this.name = name;
+        this.api = api;
+        this.settings = settings;
+    }
+
+    String name() {
+        return name;
+    }
+
+    BatchImageGenApi api() {
+        return api;
+    }
+
+    boolean isEjected(long now) {
+        return now < ejectedUntil;
+    }
+
+    long ejectedUntil() {
+        return ejectedUntil;
+    }
+
+    // lower is better
+    double score() {
+        int load = outstanding.get();
+        if (settings.strategy() == RoutingStrategy.LEAST_OUTSTANDING) {
+            return load;
+        }
+        synchronized (this) {
+            // +1 so that backends without latency samples yet still spread by load
+            return (ewmaMs + 1) * (load + 1);
+        }
+    }
+
+    long begin() {
+        outstanding.incrementAndGet();
+        calls.increment();
+        return System.nanoTime();
+    }
+
+    void end(long start, boolean success) {
+        outstanding.decrementAndGet();
+        long now = System.nanoTime();
+        long millis = TimeUnit.NANOSECONDS.toMillis(now - start);
+        latencies.record(millis);
+        synchronized (this) {
+            double weight = Math.exp(-(double) TimeUnit.NANOSECONDS.toMillis(now - ewmaUpdatedAt) / settings.ewmaDecayMs());
+            // a fast failure must not make the backend look better
+            double sample = success ? millis : Math.max(millis, ewmaMs);
+            ewmaMs = ewmaMs * weight + sample * (1 - weight);
+            ewmaUpdatedAt = now;
+        }
+        if (success) {
+            consecutiveFailures.set(0);
+            return;
+        }
+        failures.increment();
+        // calls that were in flight when the backend was ejected do not extend the ejection
+        if (consecutiveFailures.incrementAndGet() >= settings.ejectAfterFailures()
+                && !isEjected(System.currentTimeMillis())) {
+            // on its return one more failure ejects the backend again
+            consecutiveFailures.set(settings.ejectAfterFailures() - 1);
+            ejectedUntil = System.currentTimeMillis() + settings.ejectionMs();
+            ejections.increment();
+            logger.warn("Backend {} ejected for {} ms", name, settings.ejectionMs());
+        }
+    }
+
+    synchronized BackendStats stats() {
+        return new BackendStats(
+                name,
+                isEjected(System.currentTimeMillis()),
+                outstanding.get(),
+                calls.sum(),
+                failures.sum(),
+                ejections.sum(),
+                ewmaMs,
+                latencies.snapshot()
+        );
+    }
+}
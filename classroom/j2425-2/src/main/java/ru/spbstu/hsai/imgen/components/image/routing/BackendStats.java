@@ -0,0 +1,15 @@
+package ru.spbstu.hsai.imgen.components.image.routing;
+
+import ru.spbstu.hsai.imgen.components.metrics.HistogramSnapshot;
+
+public record BackendStats(
+        String name,
+        boolean ejected,
+        int outstanding,
+        long calls,
+        long failures,
+        long ejections,
+        double ewmaLatencyMs,
+        HistogramSnapshot latencyMs
+) {
+}
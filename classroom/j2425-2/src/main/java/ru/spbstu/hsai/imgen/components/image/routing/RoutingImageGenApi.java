@@ -0,0 +1,99 @@
+package ru.spbstu.hsai.imgen.components.image.routing;
+
+import ru.spbstu.hsai.imgen.components.image.service.BatchImageGenApi;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads calls over several interchangeable backends, choosing one per call by the
+ * configured {@link RoutingStrategy}. A backend that keeps failing is ejected for a while;
+ * if every backend is ejected, the one due back first is used anyway.
+ */
+public class RoutingImageGenApi implements BatchImageGenApi {
+    private final List<Backend> backends = new ArrayList<>();
+    private final RoutingSettings settings;
+    // rotates the starting point of the scan, so ties do not always go to the first backend
+    private final AtomicInteger next = new AtomicInteger();
+
+    public RoutingImageGenApi(Map<String, ? extends BatchImageGenApi> backends, RoutingSettings settings) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one backend is required");
+        }
+        this.settings = settings;
+        backends.forEach((name, api) -> this.backends.add(new Backend(name, api, settings)));
+    }
+
+    // the backends run the same model, so any of them describes the parameters
+    @Override
+    public String parameters() {
+        return backends.get(0).api().parameters();
+    }
+
+    @Override
+    public Optional<String> generateImage(String prompt) {
+        return generateImageAsync(prompt).join();
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> generateImageAsync(String prompt) {
+        Backend backend = choose();
+        long start = backend.begin();
+        CompletableFuture<Optional<String>> call;
+        try {
+            call = backend.api().generateImageAsync(prompt);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        return call.whenComplete((image, error) -> backend.end(start, error == null && image.isPresent()));
+    }
+
+    @Override
+    public CompletableFuture<List<Optional<String>>> generateImagesAsync(List<String> prompts) {
+        Backend backend = choose();
+        long start = backend.begin();
+        CompletableFuture<List<Optional<String>>> call;
+        try {
+            call = backend.api().generateImagesAsync(prompts);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        return call.whenComplete((images, error) ->
+                backend.end(start, error == null && images.stream().anyMatch(Optional::isPresent)));
+    }
+
+    Backend choose() {
+        long now = System.currentTimeMillis();
+        int offset = Math.floorMod(next.getAndIncrement(), backends.size());
+        Backend best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < backends.size(); i++) {
+            Backend backend = backends.get((offset + i) % backends.size());
+            if (backend.isEjected(now)) {
+                continue;
+            }
+            double score = backend.score();
+            if (best == null || score < bestScore) {
+                best = backend;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            return backends.stream().min(Comparator.comparingLong(Backend::ejectedUntil)).orElseThrow();
+        }
+        return best;
+    }
+
+    public RoutingStats stats() {
+        List<BackendStats> result = new ArrayList<>(backends.size());
+        for (Backend backend : backends) {
+            result.add(backend.stats());
+        }
+        return new RoutingStats(settings.strategy().name(), result);
+    }
+}
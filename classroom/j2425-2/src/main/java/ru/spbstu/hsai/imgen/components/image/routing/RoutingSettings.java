@@ -0,0 +1,17 @@
+package ru.spbstu.hsai.imgen.components.image.routing;
+
+/**
+ * @param ewmaDecayMs        after this long an old latency sample weighs about a third of a new one
+ * @param ejectAfterFailures consecutive failures after which a backend stops receiving calls
+ * @param ejectionMs         how long an ejected backend is left alone before it is tried again
+ */
+public record RoutingSettings(
+        RoutingStrategy strategy,
+        long ewmaDecayMs,
+        int ejectAfterFailures,
+        long ejectionMs
+) {
+    public static RoutingSettings defaults() {
+        return new RoutingSettings(RoutingStrategy.LEAST_OUTSTANDING, 10_000, 5, 30_000);
+    }
+}
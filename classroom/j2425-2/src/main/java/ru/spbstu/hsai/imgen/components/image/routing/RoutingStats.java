@@ -0,0 +1,9 @@
+package ru.spbstu.hsai.imgen.components.image.routing;
+
+import java.util.List;
+
+public record RoutingStats(
+        String strategy,
+        List<BackendStats> backends
+) {
+}
@@ -0,0 +1,8 @@
+package ru.spbstu.hsai.imgen.components.image.routing;
+
+public enum RoutingStrategy {
+    // the backend with the fewest calls in flight
+    LEAST_OUTSTANDING,
+    // the backend with the lowest decayed average latency, weighted by its calls in flight
+    EWMA
+}
@@ -0,0 +1,15 @@
+package ru.spbstu.hsai.imgen.components.image.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A backend that can generate images for several prompts in one upstream call.
+ */
+public interface BatchImageGenApi extends ImageGenApi {
+
+    // one result per prompt, in the order of the prompts
+    CompletableFuture<List<Optional<String>>> generateImagesAsync(List<String> prompts);
+
+}
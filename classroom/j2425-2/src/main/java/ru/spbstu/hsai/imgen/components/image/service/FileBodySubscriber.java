@@ -0,0 +1,114 @@
+package ru.spbstu.hsai.imgen.components.image.service;
+
+import org.bouncycastle.util.encoders.Hex;
+import ru.spbstu.hsai.imgen.components.image.cache.ImageFile;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Writes the response body buffers handed over by the HTTP client straight into a file
+ * channel, hashing them on the way. When the length is known the file is sized up front,
+ * so it is not grown chunk by chunk.
+ */
+class FileBodySubscriber implements HttpResponse.BodySubscriber<ImageFile> {
+    private final Path path;
+    private final long expectedLength;
+    private final CompletableFuture<ImageFile> result = new CompletableFuture<>();
+    private final MessageDigest digest;
+    private FileChannel channel;
+    private Flow.Subscription subscription;
+    private long written;
+
+    /**
+     * @param expectedLength Content-Length of the response, -1 when unknown
+     */
+    FileBodySubscriber(Path path, long expectedLength) {
+        this.path = path;
+        this.expectedLength = expectedLength;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        try {
+            RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+            if (expectedLength > 0) {
+                file.setLength(expectedLength);
+            }
+            channel = file.getChannel();
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        try {
+            for (ByteBuffer buffer : buffers) {
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            subscription.cancel();
+            fail(e);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            // a server sending less than announced must not leave zero padding behind
+            channel.truncate(written);
+            channel.close();
+            result.complete(new ImageFile(path, Hex.toHexString(digest.digest()), written));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable throwable) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throwable.addSuppressed(e);
+        }
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public CompletionStage<ImageFile> getBody() {
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.spbstu.hsai.imgen.components.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.hsai.imgen.components.image.cache.ImageFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Downloads generated images into files without collecting the body in memory first.
+ */
+public class ImageDownloader {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    static Logger logger = LoggerFactory.getLogger(ImageDownloader.class);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .build();
+
+    /**
+     * Completes with empty when the server does not answer 200. The target file is removed
+     * unless the download succeeds.
+     */
+    public CompletableFuture<Optional<ImageFile>> download(String url, Path target) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        return client.sendAsync(request, info -> info.statusCode() == 200
+                        ? new FileBodySubscriber(target, info.headers().firstValueAsLong("Content-Length").orElse(-1))
+                        : HttpResponse.BodySubscribers.replacing((ImageFile) null))
+                .whenComplete((response, error) -> {
+                    if (error != null || response.statusCode() != 200) {
+                        deleteQuietly(target);
+                    }
+                })
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        logger.error("Image download from {} failed with {}", url, response.statusCode());
+                    }
+                    return Optional.ofNullable(response.body());
+                });
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete {}", file, e);
+        }
+    }
+
+    public Optional<ImageFile> downloadNow(String url, Path target) throws IOException {
+        try {
+            return download(url, target).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Image download from " + url + " failed", e.getCause());
+        }
+    }
+}
@@ -1,9 +1,20 @@
 package ru.spbstu.hsai.imgen.components.image.service;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface ImageGenApi {
 
     Optional<String> generateImage(String prompt);
 
+    // implementations with a non-blocking client override this to avoid tying up a thread per call
+    default CompletableFuture<Optional<String>> generateImageAsync(String prompt) {
+        return CompletableFuture.supplyAsync(() -> generateImage(prompt));
+    }
+
+    // everything besides the prompt that affects the generated image, part of the cache key
+    default String parameters() {
+        return getClass().getName();
+    }
+
 }
@@ -4,43 +4,67 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.spbstu.hsai.imgen.components.image.cache.ImageFile;
+import ru.spbstu.hsai.imgen.components.image.cache.PromptCache;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 
 @Service
 public class ImageGenService {
 
+    private static final String STYLE = ";realistic,4k,gotic style";
+    private static final long COALESCED_WAIT_TIMEOUT_MS = 5 * 60_000;
+
     @Autowired
     ImageGenApi imageGenApi;
+    @Autowired
+    PromptCache promptCache;
+    private final ImageDownloader imageDownloader = new ImageDownloader();
+    private final SingleFlight<String, Optional<Path>> generations = new SingleFlight<>(COALESCED_WAIT_TIMEOUT_MS);
     private static Logger logger = LoggerFactory.getLogger(ImageGenService.class);
 
     public Optional<Path> generateImage(String prompt) {
-        Optional<String> optUrl = imageGenApi.generateImage(prompt + ";realistic,4k,gotic style");
+        String key = PromptCache.key(prompt, STYLE + ";" + imageGenApi.parameters());
+        Optional<Path> cached = promptCache.get(key);
+        if (cached.isPresent()){
+            logger.info("Prompt cache hit: {}", cached.get());
+            return cached;
+        }
+        // identical prompts arriving together share one upstream generation and download
+        return generations.execute(key, () -> generateAndStore(key, prompt));
+    }
+
+    private Optional<Path> generateAndStore(String key, String prompt) {
+        Optional<String> optUrl = imageGenApi.generateImage(prompt + STYLE);
         if (optUrl.isEmpty()){
             return Optional.empty();
         }
 
-        Path imagePath = Path.of("images", String.valueOf(System.currentTimeMillis()));
         try {
-            URL url = new URL(optUrl.get());
-            logger.info(url.toString());
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setDoInput(true);
-
-            Files.copy(connection.getInputStream(), imagePath, StandardCopyOption.REPLACE_EXISTING);
+            Path temp = promptCache.newTempFile();
+            logger.info(optUrl.get());
+            Optional<ImageFile> image = imageDownloader.downloadNow(optUrl.get(), temp);
+            if (image.isEmpty()){
+                return Optional.empty();
+            }
+            return Optional.of(promptCache.put(key, image.get()));
         } catch (IOException e) {
             logger.error("Error while generating image", e);
             return Optional.empty();
         }
+    }
+
+    /**
+     * A generated image by the content hash it is stored under.
+     */
+    public Optional<Path> findImage(String contentHash) {
+        return promptCache.file(contentHash);
+    }
 
-        return Optional.of(imagePath);
+    public SingleFlight.Stats getCoalescingStats() {
+        return generations.stats();
     }
 
 }
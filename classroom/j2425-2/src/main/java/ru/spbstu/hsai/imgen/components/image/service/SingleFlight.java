@@ -0,0 +1,78 @@
+package ru.spbstu.hsai.imgen.components.image.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one call per key at a time. Callers arriving while a call for their key
+ * is in progress wait for it and get the same result or the same exception.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutMs;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public record Stats(Integer inFlight, Long calls, Long coalesced, Long failures, Long timeouts) {}
+
+    /**
+     * @param waitTimeoutMs how long a caller waits for a call started by someone else
+     */
+    public SingleFlight(long waitTimeoutMs) {
+        this.waitTimeoutMs = waitTimeoutMs;
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        calls.increment();
+        try {
+            V value = call.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.increment();
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new CompletionException("Coalesced call did not finish in " + waitTimeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(inFlight.size(), calls.sum(), coalesced.sum(), failures.sum(), timeouts.sum());
+    }
+}
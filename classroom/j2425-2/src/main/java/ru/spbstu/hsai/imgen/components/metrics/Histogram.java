@@ -0,0 +1,59 @@
+package ru.spbstu.hsai.imgen.components.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of recorded values per bucket. A value goes into the first bucket whose upper bound
+ * is not below it; values above the last bound are counted in an overflow bucket.
+ */
+public class Histogram {
+    private final long[] upperBounds;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public Histogram(long... upperBounds) {
+        this.upperBounds = upperBounds.clone();
+        this.buckets = new LongAdder[upperBounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Bounds 1, 2, 4, ... up to and including {@code limit}.
+     */
+    public static Histogram powersOfTwo(long limit) {
+        int count = 64 - Long.numberOfLeadingZeros(Math.max(1, limit));
+        long[] bounds = new long[count];
+        for (int i = 0; i < count; i++) {
+            bounds[i] = 1L << i;
+        }
+        return new Histogram(bounds);
+    }
+
+    public void record(long value) {
+        int i = 0;
+        while (i < upperBounds.length && value > upperBounds[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public HistogramSnapshot snapshot() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            long n = buckets[i].sum();
+            count += n;
+            counts.put(i < upperBounds.length ? "<=" + upperBounds[i] : ">" + upperBounds[upperBounds.length - 1], n);
+        }
+        long total = sum.sum();
+        return new HistogramSnapshot(count, count == 0 ? 0 : (double) total / count, max.get(), counts);
+    }
+}
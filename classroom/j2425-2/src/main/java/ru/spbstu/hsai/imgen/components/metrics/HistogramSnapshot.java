@@ -0,0 +1,11 @@
+package ru.spbstu.hsai.imgen.components.metrics;
+
+import java.util.Map;
+
+public record HistogramSnapshot(
+        long count,
+        double mean,
+        long max,
+        Map<String, Long> buckets
+) {
+}
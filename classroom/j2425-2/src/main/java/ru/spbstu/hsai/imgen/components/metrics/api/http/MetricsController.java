@@ -0,0 +1,106 @@
+package ru.spbstu.hsai.imgen.components.metrics.api.http;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+import ru.spbstu.hsai.imgen.components.db.PoolStats;
+import ru.spbstu.hsai.imgen.components.db.PooledDataSource;
+import ru.spbstu.hsai.imgen.components.image.cache.PromptCache;
+import ru.spbstu.hsai.imgen.components.image.cache.PromptCacheStats;
+import ru.spbstu.hsai.imgen.components.image.jobs.GenerationJobQueue;
+import ru.spbstu.hsai.imgen.components.image.jobs.JobQueueStats;
+import ru.spbstu.hsai.imgen.components.image.batching.BatchingImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.batching.BatchingStats;
+import ru.spbstu.hsai.imgen.components.image.resilience.ResilienceStats;
+import ru.spbstu.hsai.imgen.components.image.resilience.ResilientImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.routing.RoutingImageGenApi;
+import ru.spbstu.hsai.imgen.components.image.routing.RoutingStats;
+import ru.spbstu.hsai.imgen.components.image.service.ImageGenService;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimitStats;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimits;
+import ru.spbstu.hsai.imgen.components.image.service.SingleFlight;
+import ru.spbstu.hsai.imgen.components.session.SessionStats;
+import ru.spbstu.hsai.imgen.components.session.SessionStore;
+import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
+import ru.spbstu.hsai.imgen.components.user.quota.QuotaLedger;
+import ru.spbstu.hsai.imgen.components.user.quota.QuotaStats;
+
+import java.util.Map;
+
+@RestController
+public class MetricsController {
+    @Autowired
+    private PooledDataSource dataSource;
+    @Autowired
+    private SessionStore<UserEntity> userSessions;
+    @Autowired
+    private PromptCache promptCache;
+    @Autowired
+    private ImageGenService imageGenService;
+    @Autowired
+    private GenerationJobQueue generationJobs;
+    @Autowired
+    private ResilientImageGenApi imageGenApi;
+    @Autowired
+    private BatchingImageGenApi batchingImageGenApi;
+    @Autowired
+    private RoutingImageGenApi routingImageGenApi;
+    @Autowired
+    private QuotaLedger quotaLedger;
+    @Autowired
+    private RateLimits rateLimits;
+
+    @GetMapping(path = "/metrics/db-pool")
+    public @ResponseBody PoolStats dbPool(){
+        return dataSource.stats();
+    }
+
+    @GetMapping(path = "/metrics/sessions")
+    public @ResponseBody SessionStats sessions(){
+        return userSessions.stats();
+    }
+
+    @GetMapping(path = "/metrics/prompt-cache")
+    public @ResponseBody PromptCacheStats promptCache(){
+        return promptCache.stats();
+    }
+
+    @GetMapping(path = "/metrics/generate-coalescing")
+    public @ResponseBody SingleFlight.Stats generateCoalescing(){
+        return imageGenService.getCoalescingStats();
+    }
+
+    @GetMapping(path = "/metrics/jobs")
+    public @ResponseBody JobQueueStats jobs(){
+        return generationJobs.stats();
+    }
+
+    @GetMapping(path = "/metrics/upstream")
+    public @ResponseBody ResilienceStats upstream(){
+        return imageGenApi.stats();
+    }
+
+    @GetMapping(path = "/metrics/batching")
+    public @ResponseBody BatchingStats batching(){
+        return batchingImageGenApi.stats();
+    }
+
+    @GetMapping(path = "/metrics/backends")
+    public @ResponseBody RoutingStats backends(){
+        return routingImageGenApi.stats();
+    }
+
+    @GetMapping(path = "/metrics/quota")
+    public @ResponseBody QuotaStats quota(){
+        return quotaLedger.stats();
+    }
+
+    @GetMapping(path = "/metrics/rate-limits")
+    public @ResponseBody Map<String, RateLimitStats> rateLimits(){
+        return Map.of(
+                "address", rateLimits.byAddress().stats(),
+                "user", rateLimits.byUser().stats()
+        );
+    }
+}
@@ -0,0 +1,18 @@
+package ru.spbstu.hsai.imgen.components.ratelimit;
+
+/**
+ * @param permitsPerSecond sustained request rate per key
+ * @param burst            requests a key may make at once after being idle
+ * @param maxKeys          buckets kept at most; keys beyond that share one bucket until idle ones are dropped
+ */
+public record RateLimitSettings(
+        double permitsPerSecond,
+        int burst,
+        int maxKeys
+) {
+    public RateLimitSettings {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+    }
+}
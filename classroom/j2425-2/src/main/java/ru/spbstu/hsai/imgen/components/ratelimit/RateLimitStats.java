@@ -0,0 +1,9 @@
+package ru.spbstu.hsai.imgen.components.ratelimit;
+
+public record RateLimitStats(
+        int keys,
+        long allowed,
+        long rejected,
+        long untracked
+) {
+}
@@ -0,0 +1,67 @@
+package ru.spbstu.hsai.imgen.components.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One {@link TokenBucket} per key. Lookups do not lock and buckets are updated with a
+ * compare-and-set, so concurrent requests of different keys never wait for each other.
+ * Buckets that have filled up again are dropped by {@link #sweep}. Once {@code maxKeys}
+ * buckets exist, new keys are charged to one shared bucket, so flooding the limiter with
+ * fresh keys does not switch it off.
+ */
+public class RateLimiter {
+    private final RateLimitSettings settings;
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    // shared by the keys that arrive while the map is full
+    private final TokenBucket overflow = new TokenBucket(System.nanoTime());
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    public RateLimiter(RateLimitSettings settings) {
+        this.settings = settings;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / settings.permitsPerSecond());
+        this.capacityNanos = intervalNanos * settings.burst();
+    }
+
+    /**
+     * Returns 0 if the request of the key may proceed, otherwise how many milliseconds to
+     * wait before retrying. A {@code null} key is not limited.
+     */
+    public long tryAcquire(String key) {
+        if (key == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= settings.maxKeys()) {
+                untracked.increment();
+                bucket = overflow;
+            } else {
+                bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(now));
+            }
+        }
+        long waitNanos = bucket.tryTake(now, intervalNanos, capacityNanos);
+        if (waitNanos == 0) {
+            allowed.increment();
+            return 0;
+        }
+        rejected.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999));
+    }
+
+    public void sweep() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    public RateLimitStats stats() {
+        return new RateLimitStats(buckets.size(), allowed.sum(), rejected.sum(), untracked.sum());
+    }
+}
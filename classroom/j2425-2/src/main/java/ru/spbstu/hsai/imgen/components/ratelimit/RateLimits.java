@@ -0,0 +1,66 @@
+package ru.spbstu.hsai.imgen.components.ratelimit;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limits applied in front of the controllers: one per remote address, checked before a
+ * request is parsed, and one per user, checked once the access token is resolved to a live
+ * session. Keying on the user rather than the token means neither made-up tokens nor fresh
+ * sessions from {@code /authorize} get a new allowance.
+ */
+public class RateLimits implements Closeable {
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private final RateLimiter byAddress;
+    private final RateLimiter byUser;
+    private final ScheduledExecutorService sweeper;
+
+    public RateLimits(RateLimitSettings address, RateLimitSettings user) {
+        this.byAddress = new RateLimiter(address);
+        this.byUser = new RateLimiter(user);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            byAddress.sweep();
+            byUser.sweep();
+        }, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads {@code imgen.rateLimit.address.*} and {@code imgen.rateLimit.user.*}
+     * ({@code permitsPerSecond}, {@code burst}) and {@code imgen.rateLimit.maxKeys}.
+     */
+    public static RateLimits fromSystemProperties() {
+        int maxKeys = Integer.getInteger("imgen.rateLimit.maxKeys", 100_000);
+        return new RateLimits(
+                new RateLimitSettings(
+                        Double.parseDouble(System.getProperty("imgen.rateLimit.address.permitsPerSecond", "20")),
+                        Integer.getInteger("imgen.rateLimit.address.burst", 40),
+                        maxKeys),
+                new RateLimitSettings(
+                        Double.parseDouble(System.getProperty("imgen.rateLimit.user.permitsPerSecond", "5")),
+                        Integer.getInteger("imgen.rateLimit.user.burst", 10),
+                        maxKeys)
+        );
+    }
+
+    public RateLimiter byAddress() {
+        return byAddress;
+    }
+
+    // keyed by user id
+    public RateLimiter byUser() {
+        return byUser;
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.spbstu.hsai.imgen.components.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket stored as the single instant at which it will be full again, so taking a
+ * token is one compare-and-set. Each token moves the instant one interval forward; a token
+ * is refused when that would put the instant further than {@code burst} intervals ahead.
+ */
+final class TokenBucket {
+    private final AtomicLong fullAt;
+
+    TokenBucket(long now) {
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Returns 0 if a token was taken, otherwise the nanoseconds until one becomes available.
+     */
+    long tryTake(long now, long intervalNanos, long capacityNanos) {
+        while (true) {
+            long full = fullAt.get();
+            long next = Math.max(full, now) + intervalNanos;
+            if (next - now > capacityNanos) {
+                return next - now - capacityNanos;
+            }
+            if (fullAt.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // a full bucket behaves exactly like a new one and can be dropped
+    boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
@@ -0,0 +1,55 @@
+package ru.spbstu.hsai.imgen.components.ratelimit.api.http;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimits;
+import ru.spbstu.hsai.imgen.components.session.AuthenticatedRequest;
+import ru.spbstu.hsai.imgen.components.user.service.UserService;
+
+import java.lang.reflect.Type;
+
+/**
+ * Limits by user. The access token is in the request body, so its session is looked up right
+ * after the body has been read and before the controller method runs. Tokens without a session
+ * are not charged: the controller answers them with 401 and the address limit still applies.
+ */
+@ControllerAdvice
+public class AccessTokenRateLimitAdvice extends RequestBodyAdviceAdapter {
+    @Autowired
+    private RateLimits rateLimits;
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public boolean supports(MethodParameter parameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return AuthenticatedRequest.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter,
+                                Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+        String accessToken = ((AuthenticatedRequest) body).accessToken();
+        long retryAfterMs = accessToken == null ? 0 : userService.getUserBySessionID(accessToken)
+                .map(user -> rateLimits.byUser().tryAcquire(String.valueOf(user.getUserId())))
+                .orElse(0L);
+        if (retryAfterMs > 0) {
+            throw new RateLimitExceededException(retryAfterMs);
+        }
+        return body;
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<String> tooManyRequests(RateLimitExceededException e) {
+        return ResponseEntity.status(RateLimitResponses.TOO_MANY_REQUESTS)
+                .header("Retry-After", RateLimitResponses.retryAfterSeconds(e.getRetryAfterMs()))
+                .header("Content-Type", "application/json")
+                .body(RateLimitResponses.body(e.getRetryAfterMs()));
+    }
+}
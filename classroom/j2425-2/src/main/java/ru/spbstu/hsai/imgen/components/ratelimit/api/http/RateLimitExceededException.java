@@ -0,0 +1,14 @@
+package ru.spbstu.hsai.imgen.components.ratelimit.api.http;
+
+public class RateLimitExceededException extends RuntimeException {
+    private final long retryAfterMs;
+
+    public RateLimitExceededException(long retryAfterMs) {
+        super("Rate limit exceeded, retry after " + retryAfterMs + " ms");
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.spbstu.hsai.imgen.components.ratelimit.api.http;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimits;
+
+// limits by remote address before the request body is read
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+    static Logger logger = LoggerFactory.getLogger(RateLimitInterceptor.class);
+
+    @Autowired
+    private RateLimits rateLimits;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        long retryAfterMs = rateLimits.byAddress().tryAcquire(request.getRemoteAddr());
+        if (retryAfterMs == 0) {
+            return true;
+        }
+        logger.warn("Rate limit exceeded by {} on {}", request.getRemoteAddr(), request.getRequestURI());
+        RateLimitResponses.write(response, retryAfterMs);
+        return false;
+    }
+}
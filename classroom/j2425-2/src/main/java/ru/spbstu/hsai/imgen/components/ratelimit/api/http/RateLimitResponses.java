@@ -0,0 +1,31 @@
+package ru.spbstu.hsai.imgen.components.ratelimit.api.http;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+final class RateLimitResponses {
+    static final int TOO_MANY_REQUESTS = 429;
+
+    private RateLimitResponses() {
+    }
+
+    static String body(long retryAfterMs) {
+        return "{\"code\":429,\"retryAfterMs\":" + retryAfterMs + "}";
+    }
+
+    // Retry-After is in whole seconds
+    static String retryAfterSeconds(long retryAfterMs) {
+        return String.valueOf((retryAfterMs + 999) / 1000);
+    }
+
+    static void write(HttpServletResponse response, long retryAfterMs) throws IOException {
+        byte[] body = body(retryAfterMs).getBytes(StandardCharsets.UTF_8);
+        response.setStatus(TOO_MANY_REQUESTS);
+        response.setHeader("Retry-After", retryAfterSeconds(retryAfterMs));
+        response.setContentType("application/json");
+        response.setContentLengthLong(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,9 @@
+package ru.spbstu.hsai.imgen.components.session;
+
+/**
+ * A request body that carries the caller's access token.
+ */
+public interface AuthenticatedRequest {
+
+    String accessToken();
+}
@@ -0,0 +1,24 @@
+package ru.spbstu.hsai.imgen.components.session;
+
+/**
+ * @param idleTimeoutMs     a session not used for this long expires
+ * @param absoluteTimeoutMs a session expires this long after it was created, however often it is used
+ * @param maxSessions       above this size the least recently used session is evicted
+ * @param sweepIntervalMs   how often expired sessions are removed in the background
+ */
+public record SessionSettings(
+        long idleTimeoutMs,
+        long absoluteTimeoutMs,
+        int maxSessions,
+        long sweepIntervalMs
+) {
+    public SessionSettings {
+        if (idleTimeoutMs <= 0 || absoluteTimeoutMs <= 0 || maxSessions <= 0 || sweepIntervalMs <= 0) {
+            throw new IllegalArgumentException("Session timeouts, size and sweep interval must be positive");
+        }
+    }
+
+    public static SessionSettings defaults() {
+        return new SessionSettings(30 * 60_000L, 12 * 60 * 60_000L, 100_000, 60_000L);
+    }
+}
@@ -0,0 +1,13 @@
+package ru.spbstu.hsai.imgen.components.session;
+
+public record SessionStats(
+        Integer size,
+        Integer maxSessions,
+        Long created,
+        Long hits,
+        Long misses,
+        Long expired,
+        Long evicted,
+        Long invalidated
+) {
+}
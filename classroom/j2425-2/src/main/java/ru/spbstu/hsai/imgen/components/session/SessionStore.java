@@ -0,0 +1,249 @@
+package ru.spbstu.hsai.imgen.components.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access tokens mapped to session values. A session expires after the idle timeout without
+ * use or after the absolute timeout since creation, whichever comes first. The number of
+ * sessions is bounded: tokens are spread over stripes, each with its own lock and a share of
+ * the limit, and creating a session over the share evicts the stripe's least recently used one.
+ * Expired sessions are dropped on lookup and by a background sweep.
+ */
+public class SessionStore<V> implements Closeable {
+    static Logger logger = LoggerFactory.getLogger(SessionStore.class);
+    private static final int MAX_STRIPES = 16;
+
+    private final SessionSettings settings;
+    private final List<Stripe<V>> stripes;
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+
+    public SessionStore(SessionSettings settings) {
+        this.settings = settings;
+        int count = Math.min(MAX_STRIPES, settings.maxSessions());
+        List<Stripe<V>> stripes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // the shares add up to maxSessions
+            int capacity = settings.maxSessions() / count + (i < settings.maxSessions() % count ? 1 : 0);
+            stripes.add(new Stripe<>(capacity, evicted));
+        }
+        this.stripes = List.copyOf(stripes);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep,
+                settings.sweepIntervalMs(), settings.sweepIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a session for the value and returns its access token.
+     */
+    public String create(V value) {
+        String token = UUID.randomUUID().toString();
+        Stripe<V> stripe = stripe(token);
+        synchronized (stripe) {
+            stripe.add(new Session<>(token, value, System.currentTimeMillis()));
+        }
+        created.increment();
+        return token;
+    }
+
+    /**
+     * Returns the value of a live session and marks it as used.
+     */
+    public Optional<V> get(String token) {
+        if (token == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        Stripe<V> stripe = stripe(token);
+        synchronized (stripe) {
+            // taken under the lock, so the access order is also the order of lastAccess
+            long now = System.currentTimeMillis();
+            Session<V> session = stripe.sessions.get(token);
+            if (session != null && isExpired(session, now)) {
+                stripe.remove(session);
+                expired.increment();
+                session = null;
+            }
+            if (session == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            session.lastAccess = now;
+            hits.increment();
+            return Optional.of(session.value);
+        }
+    }
+
+    public boolean contains(String token) {
+        return get(token).isPresent();
+    }
+
+    public void invalidate(String token) {
+        if (token == null) {
+            return;
+        }
+        Stripe<V> stripe = stripe(token);
+        synchronized (stripe) {
+            Session<V> session = stripe.sessions.get(token);
+            if (session != null) {
+                stripe.remove(session);
+                invalidated.increment();
+            }
+        }
+    }
+
+    private Stripe<V> stripe(String token) {
+        int hash = token.hashCode();
+        return stripes.get(Math.floorMod(hash ^ (hash >>> 16), stripes.size()));
+    }
+
+    private boolean isExpired(Session<V> session, long now) {
+        return now - session.lastAccess > settings.idleTimeoutMs()
+                || now - session.createdAt > settings.absoluteTimeoutMs();
+    }
+
+    void sweep() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                removed += stripe.sweep(now, settings);
+            }
+        }
+        if (removed > 0) {
+            expired.add(removed);
+            logger.info("Removed {} expired sessions", removed);
+        }
+    }
+
+    public SessionStats stats() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.sessions.size();
+            }
+        }
+        return new SessionStats(
+                size,
+                settings.maxSessions(),
+                created.sum(),
+                hits.sum(),
+                misses.sum(),
+                expired.sum(),
+                evicted.sum(),
+                invalidated.sum()
+        );
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.sessions.clear();
+                stripe.byCreation.clear();
+            }
+        }
+    }
+
+    // guarded by its own monitor
+    private static final class Stripe<V> {
+        // access-ordered, so iteration starts from the least recently used session
+        final LinkedHashMap<String, Session<V>> sessions;
+        // creation order is also the order of absolute expiry
+        final ArrayDeque<Session<V>> byCreation = new ArrayDeque<>();
+
+        Stripe(int capacity, LongAdder evicted) {
+            this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Session<V>> eldest) {
+                    if (size() > capacity) {
+                        eldest.getValue().removed = true;
+                        evicted.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        void add(Session<V> session) {
+            sessions.put(session.token, session);
+            byCreation.addLast(session);
+            // removed sessions wait in the queue until they reach its head; drop them once they dominate
+            if (byCreation.size() > 2 * sessions.size() + MAX_STRIPES) {
+                byCreation.removeIf(queued -> queued.removed);
+            }
+        }
+
+        void remove(Session<V> session) {
+            sessions.remove(session.token);
+            session.removed = true;
+        }
+
+        // both walks stop at the first session that has not expired: the ones after it are younger
+        int sweep(long now, SessionSettings settings) {
+            int removed = 0;
+            Session<V> oldest;
+            while ((oldest = byCreation.peekFirst()) != null
+                    && (oldest.removed || now - oldest.createdAt > settings.absoluteTimeoutMs())) {
+                byCreation.pollFirst();
+                if (!oldest.removed) {
+                    remove(oldest);
+                    removed++;
+                }
+            }
+            Iterator<Session<V>> iterator = sessions.values().iterator();
+            while (iterator.hasNext()) {
+                Session<V> session = iterator.next();
+                if (now - session.lastAccess <= settings.idleTimeoutMs()) {
+                    break;
+                }
+                iterator.remove();
+                session.removed = true;
+                removed++;
+            }
+            return removed;
+        }
+    }
+
+    private static final class Session<V> {
+        final String token;
+        final V value;
+        final long createdAt;
+        long lastAccess;
+        boolean removed;
+
+        Session(String token, V value, long now) {
+            this.token = token;
+            this.value = value;
+            this.createdAt = now;
+            this.lastAccess = now;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.spbstu.hsai.imgen.components.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.hsai.imgen.components.image.api.socket.ImageGenController;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimits;
+import ru.spbstu.hsai.imgen.components.user.api.socket.UserController;
+import ru.spbstu.http.HttpRequest;
+import ru.spbstu.http.HttpResponse;
+import ru.spbstu.http.HttpServerSettings;
+import ru.spbstu.http.NioHttpServer;
+import ru.spbstu.json.JsonCodec;
+import ru.spbstu.json.JsonView;
+import ru.spbstu.json.gson.JsonCodecs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The socket controllers served over HTTP by {@link NioHttpServer}: every route of
+ * {@link ImageGenServerSocket} is a {@code POST} with the same JSON body, answered with the
+ * same JSON, so the result code stays in the body. {@code /image} answers with the file itself.
+ */
+public class ImageGenHttpServer implements Closeable {
+    private static final String TOO_MANY_REQUESTS = "{\"code\":429,\"retryAfterMs\":%d}";
+
+    static Logger logger = LoggerFactory.getLogger(ImageGenHttpServer.class);
+    static JsonCodec codec = JsonCodecs.fromSystemProperties();
+
+    private final NioHttpServer server;
+    private final RateLimits rateLimits;
+    private final RequestDispatcher dispatcher;
+
+    private UserController userController = UserController.getInstance();
+    private ImageGenController imageGenController = ImageGenController.getInstance();
+
+    public ImageGenHttpServer(HttpServerSettings settings) throws IOException {
+        this(settings, RateLimits.fromSystemProperties());
+    }
+
+    public ImageGenHttpServer(HttpServerSettings settings, RateLimits rateLimits) throws IOException {
+        this.rateLimits = rateLimits;
+        this.dispatcher = new RequestDispatcher(userController::sessionUser)
+                .limitUsers(rateLimits.byUser())
+                .register("/authorize", userController::authorize)
+                .registerAuthenticated("/get-users", userController::getUserList)
+                .registerAuthenticated("/generate", imageGenController::generate)
+                .registerFile("/image", imageGenController::findImage);
+        this.server = new NioHttpServer(settings);
+        for (String route : new String[]{"/authorize", "/get-users", "/generate", "/image"}) {
+            server.post(route, request -> handle(route, request));
+        }
+        server.start();
+    }
+
+    /**
+     * Reads {@code imgen.http.host}, {@code imgen.http.port}, {@code imgen.http.threads}
+     * and {@code imgen.http.virtual}.
+     */
+    public static HttpServerSettings settingsFromSystemProperties() {
+        HttpServerSettings defaults = HttpServerSettings.defaults(
+                System.getProperty("imgen.http.host"), Integer.getInteger("imgen.http.port", 8082));
+        return defaults.withThreads(Integer.getInteger("imgen.http.threads", defaults.threads()),
+                Boolean.getBoolean("imgen.http.virtual"));
+    }
+
+    private HttpResponse handle(String route, HttpRequest request) throws IOException {
+        long retryAfterMs = rateLimits.byAddress().tryAcquire(request.remoteAddress());
+        if (retryAfterMs > 0) {
+            logger.warn("Rate limit exceeded by {}", request.remoteAddress());
+            return tooManyRequests(TOO_MANY_REQUESTS.formatted(retryAfterMs), retryAfterMs);
+        }
+        RequestDispatcher.Response response = dispatcher.dispatch(route, JsonView.of(request.bodyAsString()));
+        if (response.retryAfterMs() > 0) {
+            return tooManyRequests((String) response.body(), response.retryAfterMs());
+        }
+        if (response.file() != null) {
+            String type = Files.probeContentType(response.file());
+            return HttpResponse.file(response.file(), type == null ? "application/octet-stream" : type);
+        }
+        if (response.body() instanceof String json) {
+            return HttpResponse.json(200, json);
+        }
+        return HttpResponse.json(200, codec.toJson(response.body()));
+    }
+
+    private static HttpResponse tooManyRequests(String body, long retryAfterMs) {
+        return HttpResponse.json(429, body).header("Retry-After", String.valueOf((retryAfterMs + 999) / 1000));
+    }
+
+    public int port() {
+        return server.port();
+    }
+
+    @Override
+    public void close() {
+        server.close();
+        rateLimits.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        ImageGenHttpServer server = new ImageGenHttpServer(settingsFromSystemProperties());
+        logger.info("Image generation HTTP server listening on port {}", server.port());
+    }
+}
@@ -3,71 +3,367 @@ package ru.spbstu.hsai.imgen.components.socket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.spbstu.hsai.imgen.components.image.api.socket.ImageGenController;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimits;
 import ru.spbstu.hsai.imgen.components.user.api.socket.UserController;
+import ru.spbstu.json.ByteBufferPool;
+import ru.spbstu.json.JsonCodec;
+import ru.spbstu.json.JsonView;
+import ru.spbstu.json.Utf8BufferWriter;
+import ru.spbstu.json.gson.JsonCodecs;
 
 import java.io.*;
-import java.net.ServerSocket;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class ImageGenServerSocket implements Closeable {
+    private static final int BACKLOG = 100;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int RESPONSE_BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED_RESPONSE_BUFFERS = 1024;
+    private static final int MAX_REQUEST_LENGTH = 1 << 20;
+    private static final int MAX_PIPELINED_REQUESTS = 64;
+    private static final long IDLE_TIMEOUT_MS = 60_000;
+    private static final byte[] INTERNAL_ERROR = "{\"code\":500}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SERVER_BUSY = "{\"code\":503}".getBytes(StandardCharsets.UTF_8);
+    private static final String TOO_MANY_REQUESTS = "{\"code\":429,\"retryAfterMs\":%d}";
 
-public class ImageGenServerSocket {
-    ServerSocket server;
     static Logger logger = LoggerFactory.getLogger(ImageGenServerSocket.class);
-    private static ExecutorService executors = Executors.newFixedThreadPool(8);
-    private UserController userController = UserController.getInstance();
-    private ImageGenController imageGenController = ImageGenController.getInstance();
+    static JsonCodec codec = JsonCodecs.fromSystemProperties();
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final ByteBufferPool responseBuffers = new ByteBufferPool(RESPONSE_BUFFER_SIZE, MAX_POOLED_RESPONSE_BUFFERS);
+    // interest-op changes requested by worker threads, applied on the selector thread
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final boolean keepAlive;
+    private final RequestExecutor executors;
+    private final RateLimits rateLimits;
+    private final RequestDispatcher dispatcher;
+    private volatile boolean running = true;
+    private long lastIdleCheck = System.currentTimeMillis();
 
     public ImageGenServerSocket(
             int port
     ) throws IOException {
-        server = new ServerSocket(port, 100);
-        logger.info("ServerSocket created on port: {}", port);
+        this(port, true);
+    }
+
+    /**
+     * @param keepAlive when {@code true} a connection stays open for any number of
+     *                  newline-delimited requests, otherwise it is closed after the first response
+     */
+    public ImageGenServerSocket(
+            int port,
+            boolean keepAlive
+    ) throws IOException {
+        this(port, keepAlive, RequestExecutor.fromSystemProperties());
+    }
+
+    public ImageGenServerSocket(
+            int port,
+            boolean keepAlive,
+            RequestExecutor executors
+    ) throws IOException {
+        this(port, keepAlive, executors, RateLimits.fromSystemProperties());
+    }
+
+    public ImageGenServerSocket(
+            int port,
+            boolean keepAlive,
+            RequestExecutor executors,
+            RateLimits rateLimits
+    ) throws IOException {
+        this(port, keepAlive, executors, rateLimits, controllerRoutes());
+    }
+
+    /**
+     * @param dispatcher routes served by this server, {@code /stats} is added to them
+     */
+    public ImageGenServerSocket(
+            int port,
+            boolean keepAlive,
+            RequestExecutor executors,
+            RateLimits rateLimits,
+            RequestDispatcher dispatcher
+    ) throws IOException {
+        this.keepAlive = keepAlive;
+        this.executors = executors;
+        this.rateLimits = rateLimits;
+        this.dispatcher = dispatcher.limitUsers(rateLimits.byUser()).register("/stats", body -> getStats());
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(new InetSocketAddress(port), BACKLOG);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        logger.info("ServerSocketChannel created on port: {}, keep-alive: {}", port, keepAlive);
         handleConnections();
     }
 
     private void handleConnections(){
         new Thread(() -> {
-            while(true){
-                try{
-                    var clientSocket = server.accept();
-                    final var in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                    final var out = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-                    executors.submit(() -> {
-                        try{
-                            logger.info("Server handle connection");
-                            String request = in.readLine();
-                            logger.info("Server has got request: {}", request);
-                            executors.submit(() -> selectMethod(request));
-                            String response = selectMethod(request);
-
-                            out.write(response);
-                            out.flush();
-                            logger.info("Был получен ответ на запрос: {}", response);
-                        } catch (IOException e){
-                            logger.error("Error while processing request", e);
-                        } finally {
-                            try {
-                                clientSocket.close();
-                            } catch (IOException e) {
-                                throw new RuntimeException(e);
-                            }
-                        }
-                    });
-                }catch (IOException e){
-                    e.printStackTrace();
+            while (running){
+                try {
+                    selector.select(IDLE_TIMEOUT_MS);
+                    runSelectorTasks();
+                    if (keepAlive){
+                        closeIdleConnections();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()){
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        processKey(key);
+                    }
+                } catch (ClosedSelectorException e){
+                    return;
+                } catch (IOException e){
+                    logger.error("Error while selecting connections", e);
                 }
             }
-        }).start();
+        }, "imgen-selector").start();
+    }
+
+    private void processKey(SelectionKey key){
+        if (!key.isValid()){
+            return;
+        }
+        try {
+            if (key.isAcceptable()){
+                accept();
+                return;
+            }
+            if (key.isReadable()){
+                read(key);
+            }
+            if (key.isValid() && key.isWritable()){
+                write(key);
+            }
+        } catch (IOException | CancelledKeyException e){
+            logger.error("Error while processing connection", e);
+            closeConnection(key);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client;
+        while ((client = server.accept()) != null){
+            client.configureBlocking(false);
+            SelectionKey key = client.register(selector, SelectionKey.OP_READ);
+            String address = ((InetSocketAddress) client.getRemoteAddress()).getAddress().getHostAddress();
+            key.attach(new SocketConnection(client, key, address, MAX_REQUEST_LENGTH));
+            logger.info("Server handle connection");
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketConnection connection = (SocketConnection) key.attachment();
+        List<String> requests = connection.readRequests(readBuffer);
+        if (connection.isEndOfStream()){
+            // the peer may half-close after sending: answer what was received, then close
+            connection.closeAfterWrite();
+            if (requests.isEmpty() && connection.shouldClose()){
+                closeConnection(key);
+                return;
+            }
+        }
+        if (requests.isEmpty()){
+            updateInterest(connection);
+            return;
+        }
+        if (!keepAlive){
+            // one request per connection: stop reading until the response is written
+            requests = requests.subList(0, 1);
+            connection.closeAfterWrite();
+        }
+        for (String request : requests){
+            logger.info("Server has got request: {}", request);
+            SocketConnection.PendingResponse response = connection.nextResponse();
+            // the address limit is checked here, before a worker is spent on the request
+            long retryAfterMs = rateLimits.byAddress().tryAcquire(connection.remoteAddress());
+            if (retryAfterMs > 0){
+                logger.warn("Rate limit exceeded by {}", connection.remoteAddress());
+                response.complete(encodeResponse(TOO_MANY_REQUESTS.formatted(retryAfterMs)));
+                continue;
+            }
+            if (!executors.trySubmit(() -> process(connection, response, request))){
+                logger.warn("Request rejected, too many requests in flight");
+                response.complete(encodeLine(SERVER_BUSY));
+            }
+        }
+        connection.drainCompleted();
+        updateInterest(connection);
+    }
+
+    private void process(SocketConnection connection, SocketConnection.PendingResponse slot, String request){
+        try {
+            // the body is indexed once; the session check and the user limit decode only the token
+            RequestDispatcher.Response response = dispatcher.dispatch(
+                    RequestDispatcher.route(request), RequestDispatcher.body(request));
+            if (response.file() != null){
+                completeWithFile(slot, response.file());
+            } else {
+                logger.info("Был получен ответ на запрос: {}", response.body());
+                slot.complete(encodeResponse(response.body()));
+            }
+        } catch (IOException | RuntimeException e){
+            logger.error("Error while processing request", e);
+            slot.complete(encodeLine(INTERNAL_ERROR));
+        }
+        runOnSelector(() -> {
+            if (!connection.key().isValid()){
+                // the connection was closed while the request was processed
+                slot.release();
+                return;
+            }
+            if (connection.drainCompleted()){
+                updateInterest(connection);
+            }
+        });
+    }
+
+    // a head line with the size, then the raw file bytes sent by the kernel from the page cache
+    private void completeWithFile(SocketConnection.PendingResponse slot, Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = file.size();
+            slot.complete(encodeResponse("{\"code\":200,\"size\":" + size + "}"), file, size);
+        } catch (IOException | RuntimeException e){
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The response and its line break as UTF-8 in pooled buffers, encoded without an
+     * intermediate string; the buffers go back to the pool once the response is written.
+     */
+    private SocketConnection.Chunk encodeResponse(Object response){
+        Utf8BufferWriter out = new Utf8BufferWriter(responseBuffers);
+        try {
+            if (response instanceof String line){
+                out.write(line, 0, line.length());
+            } else {
+                codec.toJson(response, out);
+            }
+            out.write('\n');
+            return new SocketConnection.PooledChunk(out.finish(), responseBuffers);
+        } catch (RuntimeException e){
+            out.release();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer encodeLine(byte[] response){
+        ByteBuffer buffer = ByteBuffer.allocate(response.length + 1);
+        buffer.put(response).put((byte) '\n');
+        return buffer.flip();
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        SocketConnection connection = (SocketConnection) key.attachment();
+        if (connection.flush() && connection.shouldClose()){
+            closeConnection(key);
+            return;
+        }
+        updateInterest(connection);
+    }
+
+    // reads are paused while the connection is closing or too many pipelined requests are in flight
+    private void updateInterest(SocketConnection connection){
+        SelectionKey key = connection.key();
+        if (!key.isValid()){
+            return;
+        }
+        int ops = 0;
+        if (!connection.isClosing() && connection.pendingCount() < MAX_PIPELINED_REQUESTS){
+            ops |= SelectionKey.OP_READ;
+        }
+        if (connection.hasPendingWrites()){
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
     }
 
-    private String selectMethod(String request){
-        String[] splitedRequest = request.split(" ");
-        return switch (splitedRequest[0]){
-            case "/authorize" -> userController.authorize(splitedRequest[1]);
-            case "/get-users" -> userController.getUserList(splitedRequest[1]);
-            case "/generate" -> imageGenController.generate(request.substring(splitedRequest[0].length()));
-            default -> throw new IllegalStateException("Unexpected value: " + splitedRequest[0]);
-        };
+    private void closeIdleConnections(){
+        long now = System.currentTimeMillis();
+        if (now - lastIdleCheck < 1000){
+            return;
+        }
+        lastIdleCheck = now;
+        for (SelectionKey key : selector.keys()){
+            if (key.isValid() && key.attachment() instanceof SocketConnection connection
+                    && connection.isIdle(now, IDLE_TIMEOUT_MS)){
+                logger.info("Closing idle connection {}", connection.channel());
+                closeConnection(key);
+            }
+        }
     }
 
+    private void runOnSelector(Runnable task){
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private void runSelectorTasks(){
+        Runnable task;
+        while ((task = selectorTasks.poll()) != null){
+            task.run();
+        }
+    }
+
+    private void closeConnection(SelectionKey key){
+        if (key.attachment() instanceof SocketConnection connection){
+            connection.release();
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e){
+            logger.error("Error while closing connection", e);
+        }
+    }
+
+    static RequestDispatcher controllerRoutes(){
+        UserController userController = UserController.getInstance();
+        ImageGenController imageGenController = ImageGenController.getInstance();
+        return new RequestDispatcher(userController::sessionUser)
+                .register("/authorize", userController::authorize)
+                .registerAuthenticated("/get-users", userController::getUserList)
+                .registerAuthenticated("/generate", imageGenController::generate)
+                .registerFile("/image", imageGenController::findImage);
+    }
+
+    /**
+     * Registers an additional route, requests for it are dispatched like the built-in ones.
+     */
+    public ImageGenServerSocket route(String route, RequestDispatcher.RequestHandler handler){
+        dispatcher.register(route, handler);
+        return this;
+    }
+
+    public int port(){
+        return server.socket().getLocalPort();
+    }
+
+    public RequestExecutor.Stats getStats(){
+        return executors.stats();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.close();
+        server.close();
+        executors.close();
+        rateLimits.close();
+    }
 }
@@ -0,0 +1,140 @@
+package ru.spbstu.hsai.imgen.components.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimiter;
+import ru.spbstu.json.JsonView;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Routes a request line {@code <route> <json body>} to the handler registered for the route.
+ * Every request is passed to exactly one handler exactly once. Requests to authenticated
+ * routes without a valid {@code accessToken} are answered with 401 before the handler runs,
+ * from the token alone: the rest of the body is not parsed. Requests of a live session are
+ * then charged to the per-user limit, keyed by the session's user rather than the token.
+ */
+public class RequestDispatcher {
+    private static final String NOT_FOUND = "{\"code\":404}";
+    private static final String UNAUTHORIZED = "{\"code\":401}";
+    private static final String TOO_MANY_REQUESTS = "{\"code\":429,\"retryAfterMs\":%d}";
+
+    static Logger logger = LoggerFactory.getLogger(RequestDispatcher.class);
+
+    /**
+     * Handler of a route. A {@link String} result is sent as it is, any other object is
+     * serialized to JSON straight into the response buffers.
+     */
+    @FunctionalInterface
+    public interface RequestHandler {
+        Object handle(String body);
+    }
+
+    /**
+     * Handler of a route answered with a file; empty means there is no such file.
+     */
+    @FunctionalInterface
+    public interface FileHandler {
+        Optional<Path> handle(String body);
+    }
+
+    /**
+     * Either a response body or a file to send, exactly one of them is set.
+     *
+     * @param retryAfterMs positive when the request was refused by the per-user limit
+     */
+    public record Response(Object body, Path file, long retryAfterMs) {
+        public Response(Object body, Path file) {
+            this(body, file, 0);
+        }
+    }
+
+    private final Map<String, RequestHandler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, FileHandler> fileHandlers = new ConcurrentHashMap<>();
+    private final Set<String> authenticatedRoutes = ConcurrentHashMap.newKeySet();
+    private final Function<String, Optional<String>> sessions;
+    private volatile RateLimiter userLimit;
+
+    /**
+     * @param sessions the user of the live session an access token belongs to
+     */
+    public RequestDispatcher(Function<String, Optional<String>> sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Charges every request to an authenticated route to the limiter, keyed by user.
+     */
+    public RequestDispatcher limitUsers(RateLimiter limiter) {
+        this.userLimit = limiter;
+        return this;
+    }
+
+    public RequestDispatcher register(String route, RequestHandler handler) {
+        if (fileHandlers.containsKey(route) || handlers.putIfAbsent(route, handler) != null) {
+            throw new IllegalStateException("Route already registered: " + route);
+        }
+        return this;
+    }
+
+    public RequestDispatcher registerAuthenticated(String route, RequestHandler handler) {
+        register(route, handler);
+        authenticatedRoutes.add(route);
+        return this;
+    }
+
+    public RequestDispatcher registerFile(String route, FileHandler handler) {
+        if (handlers.containsKey(route) || fileHandlers.putIfAbsent(route, handler) != null) {
+            throw new IllegalStateException("Route already registered: " + route);
+        }
+        return this;
+    }
+
+    public Response dispatch(String request) {
+        return dispatch(route(request), body(request));
+    }
+
+    public Response dispatch(String route, JsonView body) {
+        RequestHandler handler = handlers.get(route);
+        if (handler != null) {
+            if (authenticatedRoutes.contains(route)) {
+                String token = body.getString("accessToken");
+                Optional<String> user = token == null ? Optional.empty() : sessions.apply(token);
+                if (user.isEmpty()) {
+                    return new Response(UNAUTHORIZED, null);
+                }
+                RateLimiter limiter = userLimit;
+                long retryAfterMs = limiter == null ? 0 : limiter.tryAcquire(user.get());
+                if (retryAfterMs > 0) {
+                    logger.warn("Rate limit exceeded by user {}", user.get());
+                    return new Response(TOO_MANY_REQUESTS.formatted(retryAfterMs), null, retryAfterMs);
+                }
+            }
+            return new Response(handler.handle(body.text()), null);
+        }
+        FileHandler fileHandler = fileHandlers.get(route);
+        if (fileHandler != null) {
+            return fileHandler.handle(body.text())
+                    .map(file -> new Response(null, file))
+                    .orElseGet(() -> new Response(NOT_FOUND, null));
+        }
+        logger.warn("Unexpected route: {}", route);
+        return new Response(NOT_FOUND, null);
+    }
+
+    // "<route> <json body>"
+    public static String route(String request) {
+        int separator = request.indexOf(' ');
+        return separator < 0 ? request : request.substring(0, separator);
+    }
+
+    public static JsonView body(String request) {
+        int separator = request.indexOf(' ');
+        return JsonView.of(request, separator < 0 ? request.length() : separator + 1);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.spbstu.hsai.imgen.components.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs socket requests either on a fixed pool of platform threads or on a virtual
+ * thread per request. In both modes the number of requests in flight is bounded,
+ * a request over the limit is refused instead of queued.
+ */
+public class RequestExecutor implements Closeable {
+    public enum Mode { PLATFORM, VIRTUAL }
+
+    static Logger logger = LoggerFactory.getLogger(RequestExecutor.class);
+
+    private final Mode mode;
+    private final int poolSize;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+    private final Semaphore admission;
+    private final long startedAt = System.nanoTime();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    public RequestExecutor(Mode mode, int poolSize, int maxInFlight) {
+        if (poolSize <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("poolSize and maxInFlight must be positive");
+        }
+        this.mode = mode;
+        this.poolSize = poolSize;
+        this.maxInFlight = maxInFlight;
+        this.admission = new Semaphore(maxInFlight);
+        this.executor = switch (mode) {
+            case PLATFORM -> Executors.newFixedThreadPool(poolSize);
+            case VIRTUAL -> Executors.newVirtualThreadPerTaskExecutor();
+        };
+        logger.info("Request executor: mode {}, pool size {}, max in flight {}", mode, poolSize, maxInFlight);
+    }
+
+    /**
+     * Reads {@code imgen.socket.executor} (platform|virtual), {@code imgen.socket.poolSize}
+     * and {@code imgen.socket.maxInFlight} system properties.
+     */
+    public static RequestExecutor fromSystemProperties() {
+        Mode mode = Mode.valueOf(System.getProperty("imgen.socket.executor", "platform").toUpperCase());
+        int poolSize = Integer.getInteger("imgen.socket.poolSize", 8);
+        int maxInFlight = Integer.getInteger("imgen.socket.maxInFlight", 256);
+        return new RequestExecutor(mode, poolSize, maxInFlight);
+    }
+
+    /**
+     * Returns {@code false} if the request was not admitted because the limit of
+     * requests in flight is reached.
+     */
+    public boolean trySubmit(Runnable task) {
+        if (!admission.tryAcquire()) {
+            rejected.increment();
+            return false;
+        }
+        long submittedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    latencyNanos.add(System.nanoTime() - submittedAt);
+                    completed.increment();
+                    admission.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            rejected.increment();
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    public Stats stats() {
+        long done = completed.sum();
+        double uptimeSeconds = (System.nanoTime() - startedAt) / 1e9;
+        return new Stats(
+                mode.name().toLowerCase(),
+                mode == Mode.PLATFORM ? poolSize : null,
+                maxInFlight,
+                maxInFlight - admission.availablePermits(),
+                accepted.sum(),
+                done,
+                rejected.sum(),
+                done == 0 ? 0 : latencyNanos.sum() / 1e6 / done,
+                uptimeSeconds == 0 ? 0 : done / uptimeSeconds
+        );
+    }
+
+    public record Stats(
+            String mode,
+            Integer poolSize,
+            Integer maxInFlight,
+            Integer inFlight,
+            Long accepted,
+            Long completed,
+            Long rejected,
+            Double avgLatencyMs,
+            Double throughputPerSecond
+    ){}
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
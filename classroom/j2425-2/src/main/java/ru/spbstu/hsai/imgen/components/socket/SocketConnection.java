@@ -0,0 +1,295 @@
+package ru.spbstu.hsai.imgen.components.socket;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.json.ByteBufferPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * State of a single client connection owned by the selector thread:
+ * the partially received request line, responses of pipelined requests
+ * in arrival order and the queue of pending writes.
+ */
+class SocketConnection {
+    static Logger logger = LoggerFactory.getLogger(SocketConnection.class);
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final String remoteAddress;
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(256);
+    private final Deque<PendingResponse> pendingResponses = new ArrayDeque<>();
+    private final Deque<Chunk> writeQueue = new ArrayDeque<>();
+    private final int maxRequestLength;
+    private boolean closeAfterWrite;
+    private boolean endOfStream;
+    private long lastActivity = System.currentTimeMillis();
+
+    SocketConnection(SocketChannel channel, SelectionKey key, String remoteAddress, int maxRequestLength) {
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = remoteAddress;
+        this.maxRequestLength = maxRequestLength;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    SelectionKey key() {
+        return key;
+    }
+
+    String remoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Reads everything currently available on the channel and returns the complete
+     * newline-terminated requests.
+     */
+    List<String> readRequests(ByteBuffer buffer) throws IOException {
+        List<String> requests = new ArrayList<>();
+        int read;
+        while ((read = channel.read(buffer)) > 0) {
+            lastActivity = System.currentTimeMillis();
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    requests.add(decodeLine());
+                } else {
+                    if (lineBuffer.size() >= maxRequestLength) {
+                        throw new IOException("Request exceeds " + maxRequestLength + " bytes");
+                    }
+                    lineBuffer.write(b);
+                }
+            }
+            buffer.clear();
+        }
+        if (read < 0) {
+            endOfStream = true;
+        }
+        return requests;
+    }
+
+    boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    private String decodeLine() {
+        byte[] bytes = lineBuffer.toByteArray();
+        lineBuffer.reset();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reserves the response slot of the next request so responses leave in request order
+     * regardless of which worker finishes first.
+     */
+    PendingResponse nextResponse() {
+        PendingResponse response = new PendingResponse();
+        pendingResponses.add(response);
+        return response;
+    }
+
+    int pendingCount() {
+        return pendingResponses.size();
+    }
+
+    /**
+     * Moves the completed responses from the head of the pipeline to the write queue.
+     */
+    boolean drainCompleted() {
+        boolean drained = false;
+        while (!pendingResponses.isEmpty() && pendingResponses.peek().isCompleted()) {
+            writeQueue.addAll(pendingResponses.poll().chunks());
+            drained = true;
+        }
+        return drained;
+    }
+
+    void closeAfterWrite() {
+        closeAfterWrite = true;
+    }
+
+    boolean isClosing() {
+        return closeAfterWrite;
+    }
+
+    boolean shouldClose() {
+        return closeAfterWrite && pendingResponses.isEmpty() && writeQueue.isEmpty();
+    }
+
+    boolean hasPendingWrites() {
+        return !writeQueue.isEmpty();
+    }
+
+    boolean isIdle(long now, long idleTimeoutMillis) {
+        return pendingResponses.isEmpty() && writeQueue.isEmpty() && now - lastActivity > idleTimeoutMillis;
+    }
+
+    /**
+     * Writes as much of the queue as the socket accepts without blocking.
+     * Returns {@code true} when nothing is left to write.
+     */
+    boolean flush() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            Chunk head = writeQueue.peek();
+            if (!head.writeTo(channel)) {
+                return false;
+            }
+            writeQueue.poll().release();
+            lastActivity = System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    /**
+     * Releases the files of responses that will not be written anymore.
+     */
+    void release() {
+        for (Chunk chunk : writeQueue) {
+            chunk.release();
+        }
+        writeQueue.clear();
+        for (PendingResponse response : pendingResponses) {
+            response.release();
+        }
+    }
+
+    /**
+     * A piece of a response: a buffer, or a region of a file that is handed to the socket
+     * with {@link FileChannel#transferTo} so the kernel copies it without passing through the heap.
+     */
+    interface Chunk {
+        /**
+         * Returns {@code true} once the chunk is written completely.
+         */
+        boolean writeTo(SocketChannel channel) throws IOException;
+
+        default void release() {
+        }
+    }
+
+    record BufferChunk(ByteBuffer buffer) implements Chunk {
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            channel.write(buffer);
+            return !buffer.hasRemaining();
+        }
+    }
+
+    /**
+     * Buffers of a {@link ByteBufferPool}, written with one gathering write and returned to
+     * the pool on release.
+     */
+    static final class PooledChunk implements Chunk {
+        private final ByteBuffer[] buffers;
+        private final ByteBufferPool pool;
+        private boolean released;
+
+        PooledChunk(ByteBuffer[] buffers, ByteBufferPool pool) {
+            this.buffers = buffers;
+            this.pool = pool;
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            channel.write(buffers);
+            return !buffers[buffers.length - 1].hasRemaining();
+        }
+
+        // both the closing connection and the worker that completed the response may release it
+        @Override
+        public synchronized void release() {
+            if (!released) {
+                released = true;
+                for (ByteBuffer buffer : buffers) {
+                    pool.release(buffer);
+                }
+            }
+        }
+    }
+
+    static final class FileChunk implements Chunk {
+        private final FileChannel file;
+        private final long end;
+        private long position;
+
+        FileChunk(FileChannel file, long position, long count) {
+            this.file = file;
+            this.position = position;
+            this.end = position + count;
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            while (position < end) {
+                long sent = file.transferTo(position, end - position, channel);
+                if (sent <= 0) {
+                    return false;
+                }
+                position += sent;
+            }
+            return true;
+        }
+
+        @Override
+        public void release() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                logger.warn("Error while closing sent file", e);
+            }
+        }
+    }
+
+    static final class PendingResponse {
+        private volatile List<Chunk> chunks;
+
+        void complete(ByteBuffer payload) {
+            complete(new BufferChunk(payload));
+        }
+
+        void complete(Chunk payload) {
+            this.chunks = List.of(payload);
+        }
+
+        /**
+         * Completes with a head line followed by {@code count} bytes of the file.
+         */
+        void complete(Chunk head, FileChannel file, long count) {
+            this.chunks = List.of(head, new FileChunk(file, 0, count));
+        }
+
+        boolean isCompleted() {
+            return chunks != null;
+        }
+
+        List<Chunk> chunks() {
+            return chunks;
+        }
+
+        void release() {
+            List<Chunk> completed = chunks;
+            if (completed != null) {
+                completed.forEach(Chunk::release);
+            }
+        }
+    }
+}
@@ -1,17 +1,18 @@
 package ru.spbstu.hsai.imgen.components.user.api.http;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 import ru.spbstu.hsai.imgen.components.user.api.http.dto.AccessTokenDTO;
 import ru.spbstu.hsai.imgen.components.user.api.http.dto.AuthorizationDTO;
-import ru.spbstu.hsai.imgen.components.user.api.http.dto.UserDTO;
-import ru.spbstu.hsai.imgen.components.user.api.http.dto.UserListDTO;
 import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
 import ru.spbstu.hsai.imgen.components.user.service.UserService;
+import ru.spbstu.json.JsonStreamWriter;
 import ru.spbstu.server.AuthorizationRequest;
 
+import java.io.IOException;
 import java.util.Optional;
 
 @RestController
@@ -37,22 +38,29 @@ public class UserController {
         }
     }
 
+    // one page per request, rows go from the result set straight to the response body
     @GetMapping(path = "/users")
-    public @ResponseBody UserListDTO getUserList(
-            @RequestBody AccessTokenDTO request
-    ){
+    public void getUserList(
+            @RequestBody AccessTokenDTO request,
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(required = false) Integer limit,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        JsonStreamWriter json = new JsonStreamWriter(response.getWriter());
+        json.beginObject();
         if (request != null && service.getUserBySessionID(request.accessToken()).isPresent()){
-            return new UserListDTO(200, service.getAllUsers().stream()
-                    .map(this::mapFromUserEntity).toList());
+            json.name("code").value(200).name("users").beginArray();
+            Integer nextCursor = service.forEachUser(cursor, limit, (userID, login, quota) -> json.beginObject()
+                    .name("userID").value(userID)
+                    .name("login").value(login)
+                    .name("quota").value(quota)
+                    .endObject());
+            json.endArray().name("nextCursor").value(nextCursor);
+        } else {
+            json.name("code").value(401).name("users").nullValue();
         }
-        return new UserListDTO(401, null);
-    }
-
-    private UserDTO mapFromUserEntity(UserEntity object){
-        return new UserDTO(
-                object.getUserId(),
-                object.getLogin(),
-                object.getQuota()
-        );
+        json.endObject().flush();
     }
 }
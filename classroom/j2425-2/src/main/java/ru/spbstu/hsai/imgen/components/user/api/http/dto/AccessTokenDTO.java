@@ -1,4 +1,6 @@
 package ru.spbstu.hsai.imgen.components.user.api.http.dto;
 
-public record AccessTokenDTO(String accessToken) {
+import ru.spbstu.hsai.imgen.components.session.AuthenticatedRequest;
+
+public record AccessTokenDTO(String accessToken) implements AuthenticatedRequest {
 }
@@ -1,46 +1,61 @@
 package ru.spbstu.hsai.imgen.components.user.api.socket;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import ru.spbstu.hsai.imgen.components.user.api.socket.dto.AccessTokenDTO;
 import ru.spbstu.hsai.imgen.components.user.api.socket.dto.AuthorizationDTO;
-import ru.spbstu.hsai.imgen.components.user.api.socket.dto.UserDTO;
-import ru.spbstu.hsai.imgen.components.user.api.socket.dto.UserListDTO;
+import ru.spbstu.hsai.imgen.components.user.api.socket.dto.UserPageRequestDTO;
 import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
 import ru.spbstu.hsai.imgen.components.user.service.UserService;
+import ru.spbstu.json.JsonCodec;
+import ru.spbstu.json.JsonWritable;
+import ru.spbstu.json.gson.JsonCodecs;
 import ru.spbstu.server.AuthorizationRequest;
 
 import java.util.Optional;
 
 public class UserController {
-    static Gson gson = new GsonBuilder().serializeNulls().create();
+    static JsonCodec codec = JsonCodecs.fromSystemProperties();
     static Logger logger = LoggerFactory.getLogger(UserController.class);
     private UserService service = UserService.getInstance();
 
-    public String authorize(String body){
+    public AuthorizationDTO authorize(String body){
         logger.info("Получили запрос authorize с body: {}", body);
-        AuthorizationRequest auth = gson.fromJson(body, AuthorizationRequest.class);
+        AuthorizationRequest auth = codec.fromJson(body, AuthorizationRequest.class);
 
         Optional<String> optToken = service.authentificate(auth.login(), auth.password());
 
         if (optToken.isEmpty()){
-            return gson.toJson(new AuthorizationDTO(401, null, null));
+            return new AuthorizationDTO(401, null, null);
         } else {
             String token = optToken.get();
             Optional<UserEntity> user = service.getUserBySessionID(token);
-            return gson.toJson(new AuthorizationDTO(200, token, user.get().getQuota()));
+            return new AuthorizationDTO(200, token, user.get().getQuota());
         }
     }
 
-    public String getUserList(String body){
-        AccessTokenDTO token = gson.fromJson(body, AccessTokenDTO.class);
-        if (token != null && service.getUserBySessionID(token.accessToken()).isPresent()){
-            return gson.toJson(new UserListDTO(200, service.getAllUsers().stream()
-                    .map(this::mapFromUserEntity).toList()));
-        }
-        return gson.toJson(new UserListDTO(401, null));
+    // the id of the session's user, the key of the per-user rate limit
+    public Optional<String> sessionUser(String accessToken){
+        return service.getUserBySessionID(accessToken).map(user -> String.valueOf(user.getUserId()));
+    }
+
+    // the response line is one page, written row by row into the response without intermediate DTO lists
+    public JsonWritable getUserList(String body){
+        UserPageRequestDTO request = codec.fromJson(body, UserPageRequestDTO.class);
+        return json -> {
+            json.beginObject();
+            if (request != null && service.getUserBySessionID(request.accessToken()).isPresent()){
+                json.name("code").value(200).name("users").beginArray();
+                Integer nextCursor = service.forEachUser(request.cursor(), request.limit(), (userID, login, quota) -> json.beginObject()
+                        .name("userID").value(userID)
+                        .name("login").value(login)
+                        .name("quota").value(quota)
+                        .endObject());
+                json.endArray().name("nextCursor").value(nextCursor);
+            } else {
+                json.name("code").value(401).name("users").nullValue();
+            }
+            json.endObject();
+        };
     }
 
     private UserController(){
@@ -60,12 +75,4 @@ public class UserController {
         }
         return instance;
     }
-
-    private UserDTO mapFromUserEntity(UserEntity object){
-        return new UserDTO(
-                object.getUserId(),
-                object.getLogin(),
-                object.getQuota()
-        );
-    }
 }
@@ -0,0 +1,8 @@
+package ru.spbstu.hsai.imgen.components.user.api.socket.dto;
+
+public record UserPageRequestDTO(
+        String accessToken,
+        Integer cursor,
+        Integer limit
+) {
+}
@@ -8,9 +8,9 @@ import java.util.Collection;
 import java.util.Optional;
 
 @Repository
-public interface UserDao extends CrudRepository<UserEntity, Integer> {
+public interface UserDao extends CrudRepository<UserEntity, Integer>, UserPageDao, UserQuotaDao {
 
     public Collection<UserEntity> findAll();
 
-    public Optional<UserEntity> findByLoginAndPassword(String login, String password);
+    public Optional<UserEntity> findByLogin(String login);
 }
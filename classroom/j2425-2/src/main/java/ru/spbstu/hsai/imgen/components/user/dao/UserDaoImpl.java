@@ -2,6 +2,9 @@ package ru.spbstu.hsai.imgen.components.user.dao;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.spbstu.db.PasswordHashes;
+import ru.spbstu.db.SchemaMigrations;
+import ru.spbstu.db.SqliteConnectionManager;
 import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
 import ru.spbstu.hsai.imgen.components.user.service.UserDao;
 
@@ -13,12 +16,12 @@ import java.util.Optional;
 
 public class UserDaoImpl implements UserDao {
 
-    final String DATABASE_URL = "jdbc:sqlite:users.db";
-
     static Logger logger = LoggerFactory.getLogger(UserDaoImpl.class);
 
+    private final SqliteConnectionManager connections;
 
-    private UserDaoImpl() {
+    private UserDaoImpl(SqliteConnectionManager connections) {
+        this.connections = connections;
         initializeDB();
     }
 
@@ -29,20 +32,20 @@ public class UserDaoImpl implements UserDao {
 
         List<UserEntity> users = new ArrayList<>();
 
-        try (Connection conn = DriverManager.getConnection(DATABASE_URL);
-             PreparedStatement statement = conn.prepareStatement(sql)
-        ) {
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                Integer userID = rs.getInt(1);
-                String login = rs.getString(2);
-                String password = rs.getString(3);
-                Integer quota = rs.getInt(4);
-
-                users.add(new UserEntity(userID, login, quota));
-            }
-            logger.info("Executed getUsers");
-            return users;
+        try {
+            return connections.withConnection(conn -> {
+                try (ResultSet rs = conn.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        Integer userID = rs.getInt(1);
+                        String login = rs.getString(2);
+                        Integer quota = rs.getInt(4);
+
+                        users.add(new UserEntity(userID, login, quota));
+                    }
+                }
+                logger.info("Executed getUsers");
+                return users;
+            });
         } catch (SQLException e) {
             logger.error("", e);
         }
@@ -51,20 +54,23 @@ public class UserDaoImpl implements UserDao {
 
     @Override
     public Optional<UserEntity> getUserByLoginAndPassword(String login, String passwordHash) {
-        String sql = "SELECT userID, login, password, quota FROM users WHERE login = ? AND password = ?;";
-
-        try(Connection conn = DriverManager.getConnection(DATABASE_URL);
-            PreparedStatement statement = conn.prepareStatement(sql)
-        ){
-            statement.setString(1, login);
-            statement.setString(2, passwordHash);
-            ResultSet rs = statement.executeQuery();
-            while(rs.next()){
-                Integer userID = rs.getInt(1);
-                Integer quota = rs.getInt(4);
-                logger.info("Executed get user by login and password hash");
-                return Optional.of(new UserEntity(userID, login, quota));
-            }
+        // unique index lookup by login, the hash is compared here instead of in the WHERE clause
+        String sql = "SELECT userID, login, password, quota FROM users WHERE login = ?;";
+
+        try{
+            return connections.withConnection(conn -> {
+                PreparedStatement statement = conn.prepare(sql);
+                statement.setString(1, login);
+                try(ResultSet rs = statement.executeQuery()){
+                    if(rs.next() && PasswordHashes.matches(rs.getString(3), passwordHash)){
+                        Integer userID = rs.getInt(1);
+                        Integer quota = rs.getInt(4);
+                        logger.info("Executed get user by login and password hash");
+                        return Optional.of(new UserEntity(userID, login, quota));
+                    }
+                }
+                return Optional.<UserEntity>empty();
+            });
         }catch (SQLException e){
             logger.error("", e);
         }
@@ -73,16 +79,8 @@ public class UserDaoImpl implements UserDao {
 
 
     public void initializeDB() {
-        String sql = "CREATE TABLE IF NOT EXISTS users (\n"
-                + "userID INTEGER PRIMARY KEY AUTOINCREMENT,\n"
-                + "login TEXT NOT NULL,\n"
-                + "password TEXT NOT NULL,\n"
-                + "quota INTEGER NOT NULL\n"
-                + ");";
-        try (Connection conn = DriverManager.getConnection(DATABASE_URL);
-             PreparedStatement statement = conn.prepareStatement(sql);
-        ) {
-            statement.execute();
+        try {
+            SchemaMigrations.migrate(connections);
             logger.info("Database initialized");
         } catch (SQLException e) {
             logger.error("", e);
@@ -98,7 +96,7 @@ public class UserDaoImpl implements UserDao {
         if (instance == null) {
             synchronized (monitor) {
                 if (instance == null) {
-                    instance = new UserDaoImpl();
+                    instance = new UserDaoImpl(SqliteConnectionManager.getInstance());
                 }
             }
         }
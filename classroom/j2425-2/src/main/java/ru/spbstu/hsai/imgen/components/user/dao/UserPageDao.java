@@ -0,0 +1,12 @@
+package ru.spbstu.hsai.imgen.components.user.dao;
+
+import java.io.IOException;
+
+public interface UserPageDao {
+
+    /**
+     * Passes up to {@code limit} users with an id greater than {@code afterId} to the consumer
+     * in id order, one row at a time while the result set is read. Returns the number of rows.
+     */
+    public int forEachUserAfter(int afterId, int limit, UserRowConsumer consumer) throws IOException;
+}
@@ -0,0 +1,39 @@
+package ru.spbstu.hsai.imgen.components.user.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+
+// picked up by Spring Data as the implementation of the UserPageDao fragment of UserDao
+public class UserPageDaoImpl implements UserPageDao {
+    private static final String PAGE = """
+            SELECT "userID", "login", "quota" FROM "users"
+            WHERE "userID" > :afterId ORDER BY "userID" LIMIT :limit
+            """;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public int forEachUserAfter(int afterId, int limit, UserRowConsumer consumer) throws IOException {
+        int[] rows = {0};
+        RowCallbackHandler handler = rs -> {
+            try {
+                consumer.accept(rs.getInt(1), rs.getString(2), rs.getInt(3));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        };
+        try {
+            jdbcTemplate.query(PAGE, Map.of("afterId", afterId, "limit", limit), handler);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+}
@@ -0,0 +1,11 @@
+package ru.spbstu.hsai.imgen.components.user.dao;
+
+import java.util.Map;
+
+public interface UserQuotaDao {
+
+    /**
+     * Sets the quota of every user in the map (user id to remaining quota) in one batch.
+     */
+    public void updateQuotas(Map<Integer, Integer> quotas);
+}
@@ -0,0 +1,28 @@
+package ru.spbstu.hsai.imgen.components.user.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.Map;
+
+// picked up by Spring Data as the implementation of the UserQuotaDao fragment of UserDao
+public class UserQuotaDaoImpl implements UserQuotaDao {
+    private static final String UPDATE = """
+            UPDATE "users" SET "quota" = :quota WHERE "userID" = :userId
+            """;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public void updateQuotas(Map<Integer, Integer> quotas) {
+        SqlParameterSource[] batch = quotas.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("userId", entry.getKey())
+                        .addValue("quota", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(UPDATE, batch);
+    }
+}
@@ -0,0 +1,8 @@
+package ru.spbstu.hsai.imgen.components.user.dao;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface UserRowConsumer {
+    void accept(Integer userID, String login, Integer quota) throws IOException;
+}
@@ -0,0 +1,142 @@
+package ru.spbstu.hsai.imgen.components.user.quota;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.hsai.imgen.components.user.dao.UserQuotaDao;
+import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remaining generation quota per user, kept in memory. A generation reserves one unit with a
+ * compare-and-set on the user's counter and gives it back if it fails; the database is not
+ * touched on the way. Changed counters are written to the users table in batches by a
+ * background thread. The counters are authoritative while the application runs, so the
+ * quota loaded with a user only seeds the counter the first time the user is seen.
+ */
+public class QuotaLedger implements Closeable {
+    static Logger logger = LoggerFactory.getLogger(QuotaLedger.class);
+
+    private final QuotaSettings settings;
+    private final UserQuotaDao dao;
+    private final ConcurrentHashMap<Integer, AtomicInteger> remaining = new ConcurrentHashMap<>();
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder refunded = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedUsers = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    public QuotaLedger(QuotaSettings settings, UserQuotaDao dao) {
+        this.settings = settings;
+        this.dao = dao;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "quota-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush,
+                settings.flushIntervalMs(), settings.flushIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private AtomicInteger counter(UserEntity user) {
+        AtomicInteger counter = remaining.get(user.getUserId());
+        if (counter == null) {
+            counter = remaining.computeIfAbsent(user.getUserId(),
+                    id -> new AtomicInteger(user.getQuota() == null ? 0 : user.getQuota()));
+        }
+        return counter;
+    }
+
+    public int remaining(UserEntity user) {
+        return counter(user).get();
+    }
+
+    /**
+     * Takes one unit of the user's quota. Returns {@code false}, taking nothing, when it is used up.
+     */
+    public boolean reserve(UserEntity user) {
+        AtomicInteger counter = counter(user);
+        int current;
+        do {
+            current = counter.get();
+            if (current <= 0) {
+                rejected.increment();
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - 1));
+        changed.add(user.getUserId());
+        reserved.increment();
+        return true;
+    }
+
+    // gives back a unit taken by reserve when the generation did not produce an image
+    public void refund(UserEntity user) {
+        counter(user).incrementAndGet();
+        changed.add(user.getUserId());
+        refunded.increment();
+    }
+
+    /**
+     * Writes the current value of every changed counter. Users are taken off the changed set
+     * before their value is read, so a change made meanwhile is written by the next flush.
+     */
+    public void flush() {
+        while (!changed.isEmpty()) {
+            Map<Integer, Integer> batch = new HashMap<>();
+            Iterator<Integer> ids = changed.iterator();
+            while (ids.hasNext() && batch.size() < settings.maxBatchSize()) {
+                Integer id = ids.next();
+                ids.remove();
+                batch.put(id, remaining.get(id).get());
+            }
+            try {
+                dao.updateQuotas(batch);
+                flushes.increment();
+                flushedUsers.add(batch.size());
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                changed.addAll(batch.keySet());
+                logger.error("Unable to write quotas of {} users", batch.size(), e);
+                return;
+            }
+        }
+    }
+
+    public QuotaStats stats() {
+        return new QuotaStats(
+                remaining.size(),
+                changed.size(),
+                reserved.sum(),
+                rejected.sum(),
+                refunded.sum(),
+                flushes.sum(),
+                flushedUsers.sum(),
+                flushFailures.sum()
+        );
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
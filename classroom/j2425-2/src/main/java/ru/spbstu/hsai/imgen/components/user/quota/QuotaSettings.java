@@ -0,0 +1,14 @@
+package ru.spbstu.hsai.imgen.components.user.quota;
+
+/**
+ * @param flushIntervalMs how often changed quotas are written to the users table
+ * @param maxBatchSize    users updated in one batch statement
+ */
+public record QuotaSettings(
+        long flushIntervalMs,
+        int maxBatchSize
+) {
+    public static QuotaSettings defaults() {
+        return new QuotaSettings(1_000, 500);
+    }
+}
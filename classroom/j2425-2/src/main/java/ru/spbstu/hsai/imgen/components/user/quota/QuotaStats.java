@@ -0,0 +1,13 @@
+package ru.spbstu.hsai.imgen.components.user.quota;
+
+public record QuotaStats(
+        int accounts,
+        int unflushed,
+        long reserved,
+        long rejected,
+        long refunded,
+        long flushes,
+        long flushedUsers,
+        long flushFailures
+) {
+}
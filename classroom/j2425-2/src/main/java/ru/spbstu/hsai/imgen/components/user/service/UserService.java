@@ -4,41 +4,75 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.spbstu.db.PasswordHashes;
+import ru.spbstu.hsai.imgen.components.session.SessionStore;
 import ru.spbstu.hsai.imgen.components.user.dao.UserDao;
+import ru.spbstu.hsai.imgen.components.user.dao.UserRowConsumer;
 import ru.spbstu.hsai.imgen.components.user.entities.UserEntity;
+import ru.spbstu.hsai.imgen.components.user.quota.QuotaLedger;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class UserService {
-    private Map<String, UserEntity> authConnections = new ConcurrentHashMap<>();
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    @Autowired
+    private SessionStore<UserEntity> sessions;
 
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private QuotaLedger quotas;
+
     static Logger logger = LoggerFactory.getLogger(UserService.class);
 
     public Collection<UserEntity> getAllUsers(){
         return userDao.findAll();
     }
 
+    /**
+     * Streams one page of users ordered by id. The cursor is the last id of the previous
+     * page ({@code null} for the first one); the returned cursor is {@code null} once the
+     * page was not full, i.e. there is nothing after it.
+     */
+    public Integer forEachUser(Integer cursor, Integer limit, UserRowConsumer consumer) throws IOException {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        int[] last = {cursor == null ? 0 : cursor};
+        int rows = userDao.forEachUserAfter(last[0], pageSize, (userID, login, quota) -> {
+            last[0] = userID;
+            consumer.accept(userID, login, quota);
+        });
+        return rows == pageSize ? last[0] : null;
+    }
+
     public Optional<String> authentificate(String login, String password){
-        Optional<UserEntity> user = getUserByLoginAndPassword(login, password);
-        final var uuid = UUID.randomUUID().toString();
-        if (user.isPresent()){
-            authConnections.put(uuid, user.get());
-            return Optional.of(uuid);
-        }
-        return Optional.empty();
+        return getUserByLoginAndPassword(login, password).map(user -> {
+            // the ledger is ahead of the users table until its next flush
+            user.setQuota(quotas.remaining(user));
+            return sessions.create(user);
+        });
+    }
+
+    // one unit per generation, taken before the upstream call
+    public boolean reserveQuota(UserEntity user){
+        return quotas.reserve(user);
+    }
+
+    public void refundQuota(UserEntity user){
+        quotas.refund(user);
     }
 
     public Optional<UserEntity> getUserBySessionID(String sessionID){
-        return Optional.ofNullable(authConnections.get(sessionID));
+        return sessions.get(sessionID);
     }
 
     public Optional<UserEntity> getUserByLoginAndPassword(String login, String passwordHash){
-        return userDao.findByLoginAndPassword(login, passwordHash);
+        return userDao.findByLogin(login)
+                .filter(user -> PasswordHashes.matches(user.getPassword(), passwordHash));
     }
 
 
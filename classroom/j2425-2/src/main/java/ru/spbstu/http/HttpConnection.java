@@ -0,0 +1,213 @@
+package ru.spbstu.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * State of a client connection owned by the selector thread: received bytes that are not
+ * parsed yet, the request being handled and the queue of pending writes. Only one request
+ * is handled at a time; pipelined requests wait in the input until its response is queued.
+ */
+final class HttpConnection {
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final String remoteAddress;
+    private final HttpRequestParser parser;
+    private final Deque<Chunk> writeQueue = new ArrayDeque<>();
+    private byte[] input = new byte[4096];
+    private int length;
+    private boolean inFlight;
+    private boolean continueSent;
+    private boolean closeAfterWrite;
+    private boolean endOfStream;
+    private long lastActivity = System.currentTimeMillis();
+
+    HttpConnection(SocketChannel channel, SelectionKey key, String remoteAddress, int maxRequestBytes) {
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = remoteAddress;
+        this.parser = new HttpRequestParser(maxRequestBytes);
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    SelectionKey key() {
+        return key;
+    }
+
+    String remoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Appends everything currently available on the channel to the input.
+     */
+    void read(ByteBuffer buffer) throws IOException {
+        int read;
+        while ((read = channel.read(buffer)) > 0) {
+            lastActivity = System.currentTimeMillis();
+            buffer.flip();
+            if (length + buffer.remaining() > input.length) {
+                byte[] grown = new byte[Math.max(input.length * 2, length + buffer.remaining())];
+                System.arraycopy(input, 0, grown, 0, length);
+                input = grown;
+            }
+            buffer.get(input, length, buffer.remaining());
+            length += read;
+            buffer.clear();
+        }
+        if (read < 0) {
+            endOfStream = true;
+        }
+    }
+
+    /**
+     * The next complete request of the input, or {@code null} while none is received
+     * or the previous one is still being handled.
+     */
+    HttpRequest nextRequest() throws HttpException {
+        if (inFlight || closeAfterWrite) {
+            return null;
+        }
+        HttpRequest request = parser.parse(input, length, remoteAddress);
+        if (request != null) {
+            int consumed = parser.consumed();
+            System.arraycopy(input, consumed, input, 0, length - consumed);
+            length -= consumed;
+            inFlight = true;
+            continueSent = false;
+        }
+        return request;
+    }
+
+    // true once per request that waits for an interim response
+    boolean needsContinue() {
+        if (!inFlight && !continueSent && parser.expectsContinue()) {
+            continueSent = true;
+            return true;
+        }
+        return false;
+    }
+
+    boolean isInFlight() {
+        return inFlight;
+    }
+
+    boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    void enqueue(Chunk chunk) {
+        writeQueue.add(chunk);
+    }
+
+    /**
+     * Queues the response of the request in flight, so the next one can be parsed.
+     */
+    void complete(Chunk head, Chunk body, boolean keepAlive) {
+        writeQueue.add(head);
+        if (body != null) {
+            writeQueue.add(body);
+        }
+        inFlight = false;
+        if (!keepAlive) {
+            closeAfterWrite = true;
+        }
+    }
+
+    void closeAfterWrite() {
+        closeAfterWrite = true;
+    }
+
+    boolean shouldClose() {
+        return closeAfterWrite && !inFlight && writeQueue.isEmpty();
+    }
+
+    boolean hasPendingWrites() {
+        return !writeQueue.isEmpty();
+    }
+
+    boolean isIdle(long now, long idleTimeoutMillis) {
+        return !inFlight && writeQueue.isEmpty() && now - lastActivity > idleTimeoutMillis;
+    }
+
+    /**
+     * Writes as much of the queue as the socket accepts without blocking.
+     * Returns {@code true} when nothing is left to write.
+     */
+    boolean flush() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            if (!writeQueue.peek().writeTo(channel)) {
+                return false;
+            }
+            writeQueue.poll().release();
+            lastActivity = System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    void release() {
+        writeQueue.forEach(Chunk::release);
+        writeQueue.clear();
+    }
+
+    interface Chunk {
+        /**
+         * Returns {@code true} once the chunk is written completely.
+         */
+        boolean writeTo(SocketChannel channel) throws IOException;
+
+        default void release() {
+        }
+    }
+
+    record BufferChunk(ByteBuffer buffer) implements Chunk {
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            channel.write(buffer);
+            return !buffer.hasRemaining();
+        }
+    }
+
+    /**
+     * A file sent with {@link FileChannel#transferTo}, so its content does not pass through the heap.
+     */
+    static final class FileChunk implements Chunk {
+        private final FileChannel file;
+        private final long end;
+        private long position;
+
+        FileChunk(FileChannel file, long count) {
+            this.file = file;
+            this.end = count;
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            while (position < end) {
+                long sent = file.transferTo(position, end - position, channel);
+                if (sent <= 0) {
+                    return false;
+                }
+                position += sent;
+            }
+            return true;
+        }
+
+        @Override
+        public void release() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                NioHttpServer.logger.log(System.Logger.Level.WARNING, "Error while closing sent file", e);
+            }
+        }
+    }
+}
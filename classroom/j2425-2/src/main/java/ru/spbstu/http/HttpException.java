@@ -0,0 +1,17 @@
+package ru.spbstu.http;
+
+/**
+ * A request that cannot be served, answered with {@link #status()} before the connection is closed.
+ */
+final class HttpException extends Exception {
+    private final int status;
+
+    HttpException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    int status() {
+        return status;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.spbstu.http;
+
+/**
+ * Listener of one method and path. Runs on a worker thread; an exception is answered with 500.
+ */
+@FunctionalInterface
+public interface HttpHandler {
+
+    HttpResponse handle(HttpRequest request) throws Exception;
+}
@@ -0,0 +1,9 @@
+package ru.spbstu.http;
+
+public enum HttpMethod {
+    GET,
+    POST,
+    PUT,
+    PATCH,
+    DELETE
+}
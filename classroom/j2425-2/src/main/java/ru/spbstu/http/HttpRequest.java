@@ -0,0 +1,157 @@
+package ru.spbstu.http;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A received request. Header names are case-insensitive; repeated headers are joined with
+ * {@code ", "}. The body is the decoded payload, also for chunked requests.
+ */
+public final class HttpRequest {
+    private final HttpMethod method;
+    private final String path;
+    private final String query;
+    private final String version;
+    private final Map<String, String> headers;
+    private final byte[] body;
+    private final String remoteAddress;
+    private Map<String, String> queryParameters;
+
+    HttpRequest(HttpMethod method, String target, String version, Map<String, String> headers,
+                byte[] body, String remoteAddress) {
+        this.method = method;
+        int question = target.indexOf('?');
+        this.path = decodePath(question < 0 ? target : target.substring(0, question));
+        this.query = question < 0 ? null : target.substring(question + 1);
+        this.version = version;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+        this.remoteAddress = remoteAddress;
+    }
+
+    public HttpMethod method() {
+        return method;
+    }
+
+    // percent-decoded, without the query
+    public String path() {
+        return path;
+    }
+
+    // the raw query string, null without one
+    public String query() {
+        return query;
+    }
+
+    public synchronized Map<String, String> queryParameters() {
+        if (queryParameters == null) {
+            Map<String, String> parameters = new LinkedHashMap<>();
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    if (pair.isEmpty()) {
+                        continue;
+                    }
+                    int equals = pair.indexOf('=');
+                    String name = equals < 0 ? pair : pair.substring(0, equals);
+                    String value = equals < 0 ? "" : pair.substring(equals + 1);
+                    parameters.putIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                            URLDecoder.decode(value, StandardCharsets.UTF_8));
+                }
+            }
+            queryParameters = Collections.unmodifiableMap(parameters);
+        }
+        return queryParameters;
+    }
+
+    public String version() {
+        return version;
+    }
+
+    public Map<String, String> headers() {
+        return headers;
+    }
+
+    public String header(String name) {
+        return headers.get(name);
+    }
+
+    // not copied, must not be modified
+    public byte[] body() {
+        return body;
+    }
+
+    /**
+     * The body decoded with the charset of {@code Content-Type}, UTF-8 if none is given.
+     */
+    public String bodyAsString() {
+        return new String(body, charset());
+    }
+
+    // IP address of the client, without the port
+    public String remoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Whether the connection stays open after the response: by default for HTTP/1.1,
+     * only on request for HTTP/1.0.
+     */
+    public boolean keepAlive() {
+        String connection = headers.get("Connection");
+        String tokens = connection == null ? "" : connection.toLowerCase(Locale.ROOT);
+        if (tokens.contains("close")) {
+            return false;
+        }
+        return "HTTP/1.1".equals(version) || tokens.contains("keep-alive");
+    }
+
+    private Charset charset() {
+        String contentType = headers.get("Content-Type");
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        return Charset.forName(trimmed.substring(8).replace("\"", ""));
+                    } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    // %XX sequences as UTF-8; unlike a query, '+' stays as it is
+    private static String decodePath(String path) {
+        if (path.indexOf('%') < 0) {
+            return path;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' && i + 2 < path.length()
+                    && Character.digit(path.charAt(i + 1), 16) >= 0 && Character.digit(path.charAt(i + 2), 16) >= 0) {
+                bytes.write(Character.digit(path.charAt(i + 1), 16) << 4 | Character.digit(path.charAt(i + 2), 16));
+                i += 2;
+            } else {
+                // the head is read as ISO-8859-1, so every char is one received byte
+                bytes.write(c);
+            }
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + path + (query == null ? "" : "?" + query) + " " + version;
+    }
+}
@@ -0,0 +1,285 @@
+package ru.spbstu.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Incremental parser of the requests of one connection. {@link #parse} is called with all
+ * bytes received so far and picks up where the previous call stopped; once it returns a
+ * request the caller drops the {@link #consumed()} bytes and the next request starts from 0.
+ */
+final class HttpRequestParser {
+    static final int MAX_HEAD_BYTES = 64 * 1024;
+    private static final int MAX_CHUNK_LINE = 1024;
+
+    private enum State { HEAD, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS }
+
+    private final int maxRequestBytes;
+    private State state = State.HEAD;
+    private int cursor;
+    private int consumed;
+
+    private HttpMethod method;
+    private String target;
+    private String version;
+    private Map<String, String> headers;
+    private long contentLength;
+    private long chunkRemaining;
+    private ByteArrayOutputStream chunked;
+
+    HttpRequestParser(int maxRequestBytes) {
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    /**
+     * Returns the next request in {@code data}, or {@code null} while it is incomplete.
+     */
+    HttpRequest parse(byte[] data, int length, String remoteAddress) throws HttpException {
+        if (state == State.HEAD && !parseHead(data, length)) {
+            return null;
+        }
+        byte[] body = switch (state) {
+            case BODY -> {
+                if (length - cursor < contentLength) {
+                    yield null;
+                }
+                byte[] content = new byte[(int) contentLength];
+                System.arraycopy(data, cursor, content, 0, content.length);
+                consumed = cursor + content.length;
+                yield content;
+            }
+            default -> parseChunks(data, length);
+        };
+        if (body == null) {
+            if (length > MAX_HEAD_BYTES + 2L * maxRequestBytes) {
+                throw new HttpException(413, "Request framing exceeds the limit");
+            }
+            return null;
+        }
+        HttpRequest request = new HttpRequest(method, target, version, headers, body, remoteAddress);
+        reset();
+        return request;
+    }
+
+    // bytes taken by the last returned request, including leading empty lines
+    int consumed() {
+        return consumed;
+    }
+
+    /**
+     * Whether the head is parsed and the client waits for {@code 100 Continue} before sending the body.
+     */
+    boolean expectsContinue() {
+        return state != State.HEAD && "HTTP/1.1".equals(version)
+                && "100-continue".equalsIgnoreCase(headers.get("Expect"));
+    }
+
+    private void reset() {
+        state = State.HEAD;
+        cursor = 0;
+        method = null;
+        target = null;
+        version = null;
+        headers = null;
+        contentLength = 0;
+        chunkRemaining = 0;
+        chunked = null;
+    }
+
+    private boolean parseHead(byte[] data, int length) throws HttpException {
+        int start = 0;
+        // empty lines before a request line are ignored, see RFC 9112 section 2.2
+        while (start < length && (data[start] == '\r' || data[start] == '\n')) {
+            start++;
+        }
+        int end = -1;
+        int i = Math.max(cursor, start);
+        for (; i < length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (i + 1 < length && data[i + 1] == '\n') {
+                end = i + 2;
+                break;
+            }
+            if (i + 2 < length && data[i + 1] == '\r' && data[i + 2] == '\n') {
+                end = i + 3;
+                break;
+            }
+            if (i + 2 >= length) {
+                break;
+            }
+        }
+        if (end < 0) {
+            if (length - start > MAX_HEAD_BYTES) {
+                throw new HttpException(431, "Request head exceeds " + MAX_HEAD_BYTES + " bytes");
+            }
+            cursor = i;
+            return false;
+        }
+        if (end - start > MAX_HEAD_BYTES) {
+            throw new HttpException(431, "Request head exceeds " + MAX_HEAD_BYTES + " bytes");
+        }
+        String[] lines = new String(data, start, end - start, StandardCharsets.ISO_8859_1).split("\r?\n");
+        parseRequestLine(lines[0]);
+        headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int line = 1; line < lines.length; line++) {
+            parseHeader(lines[line]);
+        }
+        cursor = end;
+        selectFraming();
+        return true;
+    }
+
+    private void parseRequestLine(String line) throws HttpException {
+        String[] parts = line.split(" ", -1);
+        if (parts.length != 3 || parts[0].isEmpty() || parts[1].isEmpty()) {
+            throw new HttpException(400, "Malformed request line");
+        }
+        if (!parts[2].startsWith("HTTP/")) {
+            throw new HttpException(400, "Malformed protocol version");
+        }
+        if (!parts[2].matches("HTTP/1\\.\\d")) {
+            throw new HttpException(505, "Unsupported protocol version " + parts[2]);
+        }
+        try {
+            method = HttpMethod.valueOf(parts[0]);
+        } catch (IllegalArgumentException e) {
+            throw new HttpException(501, "Unsupported method " + parts[0]);
+        }
+        target = parts[1];
+        if (target.regionMatches(true, 0, "http://", 0, 7) || target.regionMatches(true, 0, "https://", 0, 8)) {
+            int slash = target.indexOf('/', target.indexOf("//") + 2);
+            target = slash < 0 ? "/" : target.substring(slash);
+        }
+        if (target.charAt(0) != '/') {
+            throw new HttpException(400, "Unsupported request target");
+        }
+        version = parts[2];
+    }
+
+    private void parseHeader(String line) throws HttpException {
+        if (line.isEmpty()) {
+            return;
+        }
+        if (line.charAt(0) == ' ' || line.charAt(0) == '\t') {
+            throw new HttpException(400, "Folded header lines are not accepted");
+        }
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+            throw new HttpException(400, "Malformed header line");
+        }
+        String name = line.substring(0, colon);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c <= ' ' || c >= 127) {
+                throw new HttpException(400, "Malformed header name");
+            }
+        }
+        headers.merge(name, line.substring(colon + 1).trim(), (first, next) -> first + ", " + next);
+    }
+
+    private void selectFraming() throws HttpException {
+        String transferEncoding = headers.get("Transfer-Encoding");
+        String length = headers.get("Content-Length");
+        if (transferEncoding != null) {
+            if (length != null) {
+                throw new HttpException(400, "Both Transfer-Encoding and Content-Length are present");
+            }
+            if (!"chunked".equalsIgnoreCase(transferEncoding)) {
+                throw new HttpException(501, "Unsupported transfer encoding " + transferEncoding);
+            }
+            chunked = new ByteArrayOutputStream();
+            state = State.CHUNK_SIZE;
+            return;
+        }
+        contentLength = 0;
+        if (length != null) {
+            if (length.isEmpty() || length.length() > 18 || !length.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                throw new HttpException(400, "Invalid Content-Length");
+            }
+            contentLength = Long.parseLong(length);
+            if (contentLength > maxRequestBytes) {
+                throw new HttpException(413, "Request body exceeds " + maxRequestBytes + " bytes");
+            }
+        }
+        state = State.BODY;
+    }
+
+    private byte[] parseChunks(byte[] data, int length) throws HttpException {
+        while (true) {
+            switch (state) {
+                case CHUNK_SIZE -> {
+                    String line = nextLine(data, length);
+                    if (line == null) {
+                        return null;
+                    }
+                    int extension = line.indexOf(';');
+                    String size = (extension < 0 ? line : line.substring(0, extension)).trim();
+                    if (size.isEmpty() || size.length() > 8) {
+                        throw new HttpException(400, "Invalid chunk size");
+                    }
+                    try {
+                        chunkRemaining = Long.parseLong(size, 16);
+                    } catch (NumberFormatException e) {
+                        throw new HttpException(400, "Invalid chunk size");
+                    }
+                    if (chunked.size() + chunkRemaining > maxRequestBytes) {
+                        throw new HttpException(413, "Request body exceeds " + maxRequestBytes + " bytes");
+                    }
+                    state = chunkRemaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+                }
+                case CHUNK_DATA -> {
+                    int count = (int) Math.min(chunkRemaining, length - cursor);
+                    chunked.write(data, cursor, count);
+                    cursor += count;
+                    chunkRemaining -= count;
+                    if (chunkRemaining > 0) {
+                        return null;
+                    }
+                    state = State.CHUNK_END;
+                }
+                case CHUNK_END -> {
+                    String line = nextLine(data, length);
+                    if (line == null) {
+                        return null;
+                    }
+                    if (!line.isEmpty()) {
+                        throw new HttpException(400, "Chunk data is longer than its size");
+                    }
+                    state = State.CHUNK_SIZE;
+                }
+                case TRAILERS -> {
+                    // trailer fields are read and dropped
+                    String line = nextLine(data, length);
+                    if (line == null) {
+                        return null;
+                    }
+                    if (line.isEmpty()) {
+                        consumed = cursor;
+                        return chunked.toByteArray();
+                    }
+                }
+                default -> throw new IllegalStateException(state.name());
+            }
+        }
+    }
+
+    // the line at the cursor without its line break, null until it is received completely
+    private String nextLine(byte[] data, int length) throws HttpException {
+        for (int i = cursor; i < length; i++) {
+            if (data[i] == '\n') {
+                int end = i > cursor && data[i - 1] == '\r' ? i - 1 : i;
+                String line = new String(data, cursor, end - cursor, StandardCharsets.ISO_8859_1);
+                cursor = i + 1;
+                return line;
+            }
+            if (i - cursor > MAX_CHUNK_LINE) {
+                throw new HttpException(400, "Chunk line exceeds " + MAX_CHUNK_LINE + " bytes");
+            }
+        }
+        return null;
+    }
+}
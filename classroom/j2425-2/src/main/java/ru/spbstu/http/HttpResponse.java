@@ -0,0 +1,107 @@
+package ru.spbstu.http;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Response of a handler: a status, headers and either a body or a file that is sent from
+ * the page cache with {@code transferTo}. {@code Content-Length}, {@code Connection} and
+ * {@code Date} are set by the server.
+ */
+public final class HttpResponse {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int status;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private byte[] body = EMPTY;
+    private Path file;
+
+    public HttpResponse(int status) {
+        if (status < 100 || status > 999) {
+            throw new IllegalArgumentException("Invalid status: " + status);
+        }
+        this.status = status;
+    }
+
+    public static HttpResponse of(int status, String contentType, String body) {
+        return new HttpResponse(status)
+                .header("Content-Type", contentType)
+                .body(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HttpResponse json(int status, String json) {
+        return of(status, "application/json; charset=utf-8", json);
+    }
+
+    public static HttpResponse text(int status, String text) {
+        return of(status, "text/plain; charset=utf-8", text);
+    }
+
+    public static HttpResponse file(Path file, String contentType) {
+        HttpResponse response = new HttpResponse(200).header("Content-Type", contentType);
+        response.file = file;
+        return response;
+    }
+
+    public HttpResponse header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public HttpResponse body(byte[] body) {
+        this.body = body;
+        this.file = null;
+        return this;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public Map<String, String> headers() {
+        return headers;
+    }
+
+    public byte[] body() {
+        return body;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    static String reason(int status) {
+        return switch (status) {
+            case 100 -> "Continue";
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 202 -> "Accepted";
+            case 204 -> "No Content";
+            case 301 -> "Moved Permanently";
+            case 302 -> "Found";
+            case 304 -> "Not Modified";
+            case 400 -> "Bad Request";
+            case 401 -> "Unauthorized";
+            case 402 -> "Payment Required";
+            case 403 -> "Forbidden";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 408 -> "Request Timeout";
+            case 409 -> "Conflict";
+            case 411 -> "Length Required";
+            case 413 -> "Content Too Large";
+            case 415 -> "Unsupported Media Type";
+            case 429 -> "Too Many Requests";
+            case 431 -> "Request Header Fields Too Large";
+            case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 502 -> "Bad Gateway";
+            case 503 -> "Service Unavailable";
+            case 504 -> "Gateway Timeout";
+            case 505 -> "HTTP Version Not Supported";
+            default -> "";
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package ru.spbstu.http;
+
+/**
+ * @param host            address to listen on, {@code null} or {@code "0.0.0.0"} for all interfaces
+ * @param port            0 picks a free port
+ * @param threads         number of worker threads running handlers
+ * @param isVirtual       whether the workers are virtual threads instead of platform ones
+ * @param maxRequestBytes limit of the request body, larger requests are answered with 413
+ * @param idleTimeoutMs   a keep-alive connection without requests for this long is closed
+ */
+public record HttpServerSettings(
+        String host,
+        int port,
+        int threads,
+        boolean isVirtual,
+        int maxRequestBytes,
+        long idleTimeoutMs
+) {
+    public HttpServerSettings {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        if (threads <= 0 || maxRequestBytes <= 0 || idleTimeoutMs <= 0) {
+            throw new IllegalArgumentException("Threads, request size and idle timeout must be positive");
+        }
+    }
+
+    public static HttpServerSettings defaults(String host, int port) {
+        return new HttpServerSettings(host, port, Runtime.getRuntime().availableProcessors(), false, 1 << 20, 60_000);
+    }
+
+    public HttpServerSettings withThreads(int threads, boolean isVirtual) {
+        return new HttpServerSettings(host, port, threads, isVirtual, maxRequestBytes, idleTimeoutMs);
+    }
+}
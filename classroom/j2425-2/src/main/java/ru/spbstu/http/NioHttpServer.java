@@ -0,0 +1,353 @@
+package ru.spbstu.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+
+/**
+ * HTTP/1.1 server on a {@link ServerSocketChannel}. One selector thread accepts connections,
+ * parses requests and writes responses; handlers run on a fixed pool of
+ * {@link HttpServerSettings#threads()} workers, virtual ones if {@link HttpServerSettings#isVirtual()}.
+ * Routes match the path exactly. Connections are kept alive unless the client asks otherwise
+ * and may pipeline requests, which are answered in order.
+ */
+public class NioHttpServer implements Closeable {
+    static System.Logger logger = System.getLogger(NioHttpServer.class.getName());
+
+    private static final Set<String> SERVER_HEADERS = Set.of("content-length", "connection", "transfer-encoding", "date");
+
+    private final HttpServerSettings settings;
+    private final Map<String, Map<HttpMethod, HttpHandler>> routes = new ConcurrentHashMap<>();
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private ExecutorService workers;
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public NioHttpServer(HttpServerSettings settings) {
+        this.settings = settings;
+    }
+
+    public NioHttpServer route(HttpMethod method, String path, HttpHandler handler) {
+        routes.computeIfAbsent(path, p -> new EnumMap<>(HttpMethod.class)).put(method, handler);
+        return this;
+    }
+
+    public NioHttpServer get(String path, HttpHandler handler) {
+        return route(HttpMethod.GET, path, handler);
+    }
+
+    public NioHttpServer post(String path, HttpHandler handler) {
+        return route(HttpMethod.POST, path, handler);
+    }
+
+    public NioHttpServer put(String path, HttpHandler handler) {
+        return route(HttpMethod.PUT, path, handler);
+    }
+
+    public NioHttpServer patch(String path, HttpHandler handler) {
+        return route(HttpMethod.PATCH, path, handler);
+    }
+
+    public NioHttpServer delete(String path, HttpHandler handler) {
+        return route(HttpMethod.DELETE, path, handler);
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            throw new IllegalStateException("Server is already started");
+        }
+        ThreadFactory factory = settings.isVirtual()
+                ? Thread.ofVirtual().name("http-worker-", 0).factory()
+                : Thread.ofPlatform().name("http-worker-", 0).daemon().factory();
+        workers = Executors.newFixedThreadPool(settings.threads(), factory);
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        String host = settings.host();
+        serverChannel.bind(host == null ? new InetSocketAddress(settings.port())
+                : new InetSocketAddress(host, settings.port()), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::runSelector, "http-selector");
+        selectorThread.start();
+        logger.log(System.Logger.Level.INFO, "HTTP server listening on {0} with {1} {2} workers",
+                serverChannel.socket().getLocalSocketAddress(), settings.threads(),
+                settings.isVirtual() ? "virtual" : "platform");
+    }
+
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void runSelector() {
+        long lastIdleCheck = System.currentTimeMillis();
+        try {
+            while (running) {
+                selector.select(1000);
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        HttpConnection connection = (HttpConnection) key.attachment();
+                        if (key.isWritable()) {
+                            write(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                    } catch (CancelledKeyException e) {
+                        // closed while processing its other events
+                    }
+                }
+                selector.selectedKeys().clear();
+                long now = System.currentTimeMillis();
+                if (now - lastIdleCheck >= 1000) {
+                    lastIdleCheck = now;
+                    closeIdle(now);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                logger.log(System.Logger.Level.ERROR, "Selector loop failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            String address = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+            key.attach(new HttpConnection(channel, key, address, settings.maxRequestBytes()));
+        }
+    }
+
+    private void read(HttpConnection connection) {
+        try {
+            connection.read(readBuffer);
+            process(connection);
+            if (connection.isEndOfStream() && !connection.isInFlight()) {
+                // whatever was already queued is still sent before closing
+                connection.closeAfterWrite();
+                write(connection);
+            }
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.DEBUG, "Connection {0} failed: {1}", connection.remoteAddress(), e.getMessage());
+            close(connection);
+        }
+    }
+
+    // parses the next buffered request and hands it to a worker
+    private void process(HttpConnection connection) {
+        HttpRequest request;
+        try {
+            request = connection.nextRequest();
+        } catch (HttpException e) {
+            logger.log(System.Logger.Level.DEBUG, "Bad request from {0}: {1}", connection.remoteAddress(), e.getMessage());
+            respondAndClose(connection, e.status(), e.getMessage());
+            return;
+        }
+        if (request == null) {
+            if (connection.needsContinue()) {
+                connection.enqueue(new HttpConnection.BufferChunk(ByteBuffer.wrap(
+                        "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1))));
+                write(connection);
+            }
+            return;
+        }
+        // nothing more is read until the response is queued, pipelined requests wait in the socket
+        connection.key().interestOps(connection.key().interestOps() & ~SelectionKey.OP_READ);
+        try {
+            workers.execute(() -> handle(connection, request));
+        } catch (RejectedExecutionException e) {
+            respondAndClose(connection, 503, "Server is overloaded");
+        }
+    }
+
+    private void handle(HttpConnection connection, HttpRequest request) {
+        HttpResponse response;
+        try {
+            response = dispatch(request);
+        } catch (Exception e) {
+            logger.log(System.Logger.Level.ERROR, "Handler of " + request + " failed", e);
+            response = HttpResponse.text(500, HttpResponse.reason(500));
+        }
+        boolean keepAlive = request.keepAlive();
+        HttpConnection.Chunk body = null;
+        long length = response.body().length;
+        if (response.file() != null) {
+            try {
+                FileChannel file = FileChannel.open(response.file(), StandardOpenOption.READ);
+                body = new HttpConnection.FileChunk(file, file.size());
+                length = file.size();
+            } catch (NoSuchFileException e) {
+                response = HttpResponse.text(404, HttpResponse.reason(404));
+                length = response.body().length;
+            } catch (IOException e) {
+                logger.log(System.Logger.Level.ERROR, "Unable to open " + response.file(), e);
+                response = HttpResponse.text(500, HttpResponse.reason(500));
+                length = response.body().length;
+            }
+        }
+        if (body == null && length > 0) {
+            body = new HttpConnection.BufferChunk(ByteBuffer.wrap(response.body()));
+        }
+        HttpConnection.Chunk head = new HttpConnection.BufferChunk(ByteBuffer.wrap(head(response, length, keepAlive)));
+        HttpConnection.Chunk responseBody = body;
+        selectorTasks.add(() -> {
+            if (!connection.key().isValid()) {
+                if (responseBody != null) {
+                    responseBody.release();
+                }
+                return;
+            }
+            connection.complete(head, responseBody, keepAlive);
+            write(connection);
+            if (connection.key().isValid()) {
+                process(connection);
+            }
+        });
+        selector.wakeup();
+    }
+
+    private HttpResponse dispatch(HttpRequest request) throws Exception {
+        Map<HttpMethod, HttpHandler> handlers = routes.get(request.path());
+        if (handlers == null) {
+            return HttpResponse.text(404, HttpResponse.reason(404));
+        }
+        HttpHandler handler = handlers.get(request.method());
+        if (handler == null) {
+            return HttpResponse.text(405, HttpResponse.reason(405))
+                    .header("Allow", handlers.keySet().stream().map(Enum::name).collect(Collectors.joining(", ")));
+        }
+        HttpResponse response = handler.handle(request);
+        if (response == null) {
+            throw new IllegalStateException("Handler returned no response");
+        }
+        return response;
+    }
+
+    private static byte[] head(HttpResponse response, long length, boolean keepAlive) {
+        StringBuilder head = new StringBuilder(256)
+                .append("HTTP/1.1 ").append(response.status()).append(' ')
+                .append(HttpResponse.reason(response.status())).append("\r\n");
+        for (Map.Entry<String, String> header : response.headers().entrySet()) {
+            if (!SERVER_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        head.append("Date: ").append(DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)))
+                .append("\r\nContent-Length: ").append(length)
+                .append("\r\nConnection: ").append(keepAlive ? "keep-alive" : "close")
+                .append("\r\n\r\n");
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    // answers a request that is not handed to a worker and closes the connection
+    private void respondAndClose(HttpConnection connection, int status, String message) {
+        HttpResponse response = HttpResponse.text(status, message);
+        connection.complete(new HttpConnection.BufferChunk(ByteBuffer.wrap(head(response, response.body().length, false))),
+                new HttpConnection.BufferChunk(ByteBuffer.wrap(response.body())), false);
+        write(connection);
+    }
+
+    private void write(HttpConnection connection) {
+        try {
+            boolean flushed = connection.flush();
+            if (flushed && connection.shouldClose()) {
+                close(connection);
+                return;
+            }
+            int ops = connection.isInFlight() || connection.shouldClose() ? 0 : SelectionKey.OP_READ;
+            connection.key().interestOps(flushed ? ops : ops | SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.DEBUG, "Connection {0} failed: {1}", connection.remoteAddress(), e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void closeIdle(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof HttpConnection connection
+                    && connection.isIdle(now, settings.idleTimeoutMs())) {
+                close(connection);
+            }
+        }
+    }
+
+    private void close(HttpConnection connection) {
+        connection.key().cancel();
+        connection.release();
+        try {
+            connection.channel().close();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.DEBUG, "Error while closing connection", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof HttpConnection connection) {
+                close(connection);
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            logger.log(System.Logger.Level.WARNING, "Error while closing the server", e);
+        }
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,25 @@
+package ru.spbstu.json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Converts request and response objects to and from JSON text.
+ * Blank input reads as {@code null}.
+ */
+public interface JsonCodec {
+
+    <T> T fromJson(String json, Class<T> type);
+
+    String toJson(Object value);
+
+    // codecs that can write to the output directly override this to skip the string
+    default void toJson(Object value, Writer out) {
+        try {
+            out.write(toJson(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.spbstu.json;
+
+/**
+ * Malformed JSON, or JSON that does not fit the requested type.
+ */
+public class JsonException extends RuntimeException {
+
+    public JsonException(String message) {
+        super(message);
+    }
+
+    public JsonException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,461 @@
+package ru.spbstu.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Binds JSON to Java objects without intermediate trees, reading tokens from a
+ * {@link JsonReader} and writing them with a {@link JsonStreamWriter}.
+ * Supported are records (through the canonical constructor), classes with a no-argument
+ * constructor (through their fields), arrays, collections, maps with string keys, enums,
+ * strings, numbers, booleans and {@link Object}, which reads as maps, lists and scalars.
+ * Unknown members are skipped, missing ones keep their default.
+ */
+public class JsonMapper implements JsonCodec {
+    private static volatile JsonMapper instance;
+
+    private final ClassValue<ObjectBinding> bindings = new ClassValue<>() {
+        @Override
+        protected ObjectBinding computeValue(Class<?> type) {
+            return type.isRecord() ? new RecordBinding(type) : new FieldBinding(type);
+        }
+    };
+
+    public static JsonMapper getInstance() {
+        if (instance == null) {
+            synchronized (JsonMapper.class) {
+                if (instance == null) {
+                    instance = new JsonMapper();
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public <T> T fromJson(String json, Class<T> type) {
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        return read(new JsonReader(json), type);
+    }
+
+    public <T> T fromJson(Reader json, Class<T> type) {
+        return read(new JsonReader(json), type);
+    }
+
+    public <T> T fromJson(ByteBuffer utf8, Class<T> type) {
+        return read(new JsonReader(utf8), type);
+    }
+
+    public <T> T fromJson(char[] json, int offset, int length, Class<T> type) {
+        return read(new JsonReader(json, offset, length), type);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> toMap(String json) {
+        return fromJson(json, Map.class);
+    }
+
+    // the whole input must be one document
+    private <T> T read(JsonReader reader, Class<T> type) {
+        Object value = read(reader, (Type) type);
+        reader.endDocument();
+        return wrap(type).cast(value);
+    }
+
+    /**
+     * Reads the next value of the reader as the given, possibly parameterized, type.
+     */
+    public Object read(JsonReader reader, Type type) {
+        Class<?> raw = rawType(type);
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return raw.isPrimitive() ? defaultValue(raw) : null;
+        }
+        if (raw == Object.class) {
+            return reader.readValue();
+        }
+        if (raw == String.class) {
+            return reader.peek() == JsonToken.BOOLEAN ? String.valueOf(reader.nextBoolean()) : reader.nextString();
+        }
+        if (raw == int.class || raw == Integer.class) {
+            return reader.nextInt();
+        }
+        if (raw == long.class || raw == Long.class) {
+            return reader.nextLong();
+        }
+        if (raw == double.class || raw == Double.class) {
+            return reader.nextDouble();
+        }
+        if (raw == boolean.class || raw == Boolean.class) {
+            return reader.peek() == JsonToken.STRING
+                    ? Boolean.parseBoolean(reader.nextString())
+                    : reader.nextBoolean();
+        }
+        if (raw == float.class || raw == Float.class) {
+            return (float) reader.nextDouble();
+        }
+        if (raw == short.class || raw == Short.class) {
+            return (short) narrow(reader.nextInt(), Short.MIN_VALUE, Short.MAX_VALUE);
+        }
+        if (raw == byte.class || raw == Byte.class) {
+            return (byte) narrow(reader.nextInt(), Byte.MIN_VALUE, Byte.MAX_VALUE);
+        }
+        if (raw == char.class || raw == Character.class) {
+            String value = reader.nextString();
+            if (value.length() != 1) {
+                throw new JsonException("Expected a single character but was \"" + value + "\"");
+            }
+            return value.charAt(0);
+        }
+        if (raw == BigDecimal.class) {
+            return reader.nextBigDecimal();
+        }
+        if (raw == BigInteger.class) {
+            try {
+                return reader.nextBigDecimal().toBigIntegerExact();
+            } catch (ArithmeticException e) {
+                throw new JsonException("Not an integer", e);
+            }
+        }
+        if (raw == Number.class) {
+            return reader.peek() == JsonToken.STRING ? reader.nextBigDecimal() : reader.nextNumber();
+        }
+        if (raw.isEnum()) {
+            return readEnum(reader, raw);
+        }
+        if (raw == Optional.class) {
+            return Optional.ofNullable(read(reader, typeArgument(type, 0)));
+        }
+        if (raw.isArray()) {
+            return readArray(reader, type, raw);
+        }
+        if (Collection.class.isAssignableFrom(raw)) {
+            return readCollection(reader, type, raw);
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            return readMap(reader, type, raw);
+        }
+        return bindings.get(raw).read(this, reader);
+    }
+
+    private static int narrow(int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new JsonException("Value " + value + " out of range");
+        }
+        return value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readEnum(JsonReader reader, Class<?> type) {
+        String name = reader.nextString();
+        try {
+            return Enum.valueOf((Class) type, name);
+        } catch (IllegalArgumentException e) {
+            throw new JsonException("Unknown " + type.getSimpleName() + " constant " + name, e);
+        }
+    }
+
+    private Object readArray(JsonReader reader, Type type, Class<?> raw) {
+        Type elementType = type instanceof GenericArrayType generic
+                ? generic.getGenericComponentType()
+                : raw.getComponentType();
+        List<Object> elements = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            elements.add(read(reader, elementType));
+        }
+        reader.endArray();
+        Object array = Array.newInstance(raw.getComponentType(), elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            Array.set(array, i, elements.get(i));
+        }
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readCollection(JsonReader reader, Type type, Class<?> raw) {
+        Type elementType = typeArgument(type, 0);
+        Collection<Object> collection = (Collection<Object>) newContainer(raw);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            collection.add(read(reader, elementType));
+        }
+        reader.endArray();
+        return collection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readMap(JsonReader reader, Type type, Class<?> raw) {
+        Type keyType = typeArgument(type, 0);
+        Type valueType = typeArgument(type, 1);
+        Map<Object, Object> map = (Map<Object, Object>) newContainer(raw);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            map.put(mapKey(name, rawType(keyType)), read(reader, valueType));
+        }
+        reader.endObject();
+        return map;
+    }
+
+    private static Object mapKey(String name, Class<?> keyType) {
+        try {
+            if (keyType == String.class || keyType == Object.class) {
+                return name;
+            }
+            if (keyType == Integer.class) {
+                return Integer.valueOf(name);
+            }
+            if (keyType == Long.class) {
+                return Long.valueOf(name);
+            }
+        } catch (NumberFormatException e) {
+            throw new JsonException("Invalid map key " + name, e);
+        }
+        if (keyType.isEnum()) {
+            return readEnum(new JsonReader("\"" + name + "\""), keyType);
+        }
+        throw new JsonException("Unsupported map key type " + keyType.getName());
+    }
+
+    private static Object newContainer(Class<?> raw) {
+        if (!raw.isInterface() && !Modifier.isAbstract(raw.getModifiers())) {
+            try {
+                return raw.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new JsonException("Unable to create " + raw.getName(), e);
+            }
+        }
+        if (SortedSet.class.isAssignableFrom(raw)) {
+            return new TreeSet<>();
+        }
+        if (Set.class.isAssignableFrom(raw)) {
+            return new LinkedHashSet<>();
+        }
+        if (Queue.class.isAssignableFrom(raw)) {
+            return new ArrayDeque<>();
+        }
+        if (SortedMap.class.isAssignableFrom(raw)) {
+            return new TreeMap<>();
+        }
+        if (Map.class.isAssignableFrom(raw)) {
+            return new LinkedHashMap<>();
+        }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public String toJson(Object value) {
+        StringWriter out = new StringWriter();
+        toJson(value, out);
+        return out.toString();
+    }
+
+    @Override
+    public void toJson(Object value, Writer out) {
+        try {
+            JsonStreamWriter writer = new JsonStreamWriter(out);
+            write(writer, value);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a value of any supported type as the next value of the writer.
+     */
+    public void write(JsonStreamWriter writer, Object value) throws IOException {
+        switch (value) {
+            case null -> writer.nullValue();
+            case String string -> writer.value(string);
+            case Boolean bool -> writer.value(bool);
+            case Double number when number.isNaN() || number.isInfinite() ->
+                    throw new JsonException("Non-finite number " + number);
+            case Float number when number.isNaN() || number.isInfinite() ->
+                    throw new JsonException("Non-finite number " + number);
+            case Number number -> writer.value(number);
+            case Character character -> writer.value(character.toString());
+            case Enum<?> constant -> writer.value(constant.name());
+            case Optional<?> optional -> write(writer, optional.orElse(null));
+            case JsonWritable writable -> writable.writeJson(writer);
+            case Map<?, ?> map -> {
+                writer.beginObject();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writer.name(String.valueOf(entry.getKey()));
+                    write(writer, entry.getValue());
+                }
+                writer.endObject();
+            }
+            case Iterable<?> iterable -> {
+                writer.beginArray();
+                for (Object element : iterable) {
+                    write(writer, element);
+                }
+                writer.endArray();
+            }
+            default -> {
+                if (value.getClass().isArray()) {
+                    writer.beginArray();
+                    for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                        write(writer, Array.get(value, i));
+                    }
+                    writer.endArray();
+                } else {
+                    bindings.get(value.getClass()).write(this, writer, value);
+                }
+            }
+        }
+    }
+
+    static Class<?> rawType(Type type) {
+        return switch (type) {
+            case Class<?> raw -> raw;
+            case ParameterizedType parameterized -> (Class<?>) parameterized.getRawType();
+            case GenericArrayType array -> Array.newInstance(rawType(array.getGenericComponentType()), 0).getClass();
+            case WildcardType wildcard -> rawType(wildcard.getUpperBounds()[0]);
+            case TypeVariable<?> variable -> rawType(variable.getBounds()[0]);
+            default -> Object.class;
+        };
+    }
+
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType parameterized) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (index < arguments.length) {
+                return arguments[index];
+            }
+        }
+        return Object.class;
+    }
+
+    static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        return Array.get(Array.newInstance(type, 1), 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> wrap(Class<T> type) {
+        return type.isPrimitive() ? (Class<T>) Array.get(Array.newInstance(type, 1), 0).getClass() : type;
+    }
+
+    /**
+     * How the members of one class are read and written, built once per class.
+     */
+    interface ObjectBinding {
+        Object read(JsonMapper mapper, JsonReader reader);
+
+        void write(JsonMapper mapper, JsonStreamWriter writer, Object value) throws IOException;
+    }
+
+    private static final class FieldBinding implements ObjectBinding {
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        private final Map<String, Field> fields = new LinkedHashMap<>();
+
+        FieldBinding(Class<?> type) {
+            this.type = type;
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    // a field of a subclass hides the one of its superclass
+                    if (!fields.containsKey(field.getName())) {
+                        field.setAccessible(true);
+                        fields.put(field.getName(), field);
+                    }
+                }
+            }
+            Constructor<?> noArguments = null;
+            try {
+                noArguments = type.getDeclaredConstructor();
+                noArguments.setAccessible(true);
+            } catch (NoSuchMethodException | RuntimeException e) {
+                // such objects can still be written
+            }
+            this.constructor = noArguments;
+        }
+
+        @Override
+        public Object read(JsonMapper mapper, JsonReader reader) {
+            if (constructor == null || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                throw new JsonException("Unable to create " + type.getName() + ": no constructor without arguments");
+            }
+            try {
+                Object object = constructor.newInstance();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    Field field = fields.get(reader.nextName());
+                    if (field == null || Modifier.isFinal(field.getModifiers())) {
+                        reader.skipValue();
+                    } else {
+                        field.set(object, mapper.read(reader, field.getGenericType()));
+                    }
+                }
+                reader.endObject();
+                return object;
+            } catch (InvocationTargetException e) {
+                throw new JsonException("Unable to create " + type.getName(), e.getCause());
+            } catch (ReflectiveOperationException e) {
+                throw new JsonException("Unable to create " + type.getName(), e);
+            }
+        }
+
+        @Override
+        public void write(JsonMapper mapper, JsonStreamWriter writer, Object value) throws IOException {
+            writer.beginObject();
+            for (Field field : fields.values()) {
+                writer.name(field.getName());
+                try {
+                    mapper.write(writer, field.get(value));
+                } catch (IllegalAccessException e) {
+                    throw new JsonException("Unable to read " + field.getName(), e);
+                }
+            }
+            writer.endObject();
+        }
+    }
+}
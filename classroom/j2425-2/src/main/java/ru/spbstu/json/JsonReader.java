@@ -0,0 +1,642 @@
+package ru.spbstu.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pull parser over one JSON document. Tokens are read on demand straight from the input:
+ * a {@code char[]} is parsed in place, a {@link Reader} or a UTF-8 {@link ByteBuffer} is
+ * decoded into a small buffer as the parser advances. Nothing is built besides the values
+ * that are asked for.
+ */
+public class JsonReader implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    // inside an object, after a member name and before its value
+    private static final int DANGLING_NAME = 6;
+
+    @FunctionalInterface
+    private interface Source {
+        // -1 at the end of input
+        int read(char[] buffer, int offset, int length) throws IOException;
+    }
+
+    private final Source source;
+    private final Closeable closeable;
+    private char[] buffer;
+    private int pos;
+    private int limit;
+    // characters dropped from the front of the buffer, for error positions
+    private long discarded;
+
+    private int[] stack = new int[32];
+    private int depth;
+    private JsonToken peeked;
+
+    public JsonReader(char[] json, int offset, int length) {
+        this.source = null;
+        this.closeable = null;
+        this.buffer = json;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.discarded = -offset;
+        push(EMPTY_DOCUMENT);
+    }
+
+    public JsonReader(String json) {
+        this(json.toCharArray(), 0, json.length());
+    }
+
+    public JsonReader(Reader reader) {
+        this.source = reader::read;
+        this.closeable = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        push(EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Reads the remaining bytes of the buffer as UTF-8; the buffer's position advances as
+     * the document is parsed.
+     */
+    public JsonReader(ByteBuffer utf8) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        boolean[] flushed = {false};
+        this.source = (chars, offset, length) -> {
+            if (flushed[0]) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(chars, offset, length);
+            CoderResult result = decoder.decode(utf8, out, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (!utf8.hasRemaining() && !flushed[0] && decoder.flush(out).isUnderflow()) {
+                flushed[0] = true;
+            }
+            int read = out.position() - offset;
+            return read == 0 && flushed[0] ? -1 : read;
+        };
+        this.closeable = null;
+        this.buffer = new char[BUFFER_SIZE];
+        push(EMPTY_DOCUMENT);
+    }
+
+    public JsonToken peek() {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    private JsonToken doPeek() {
+        int scope = stack[depth - 1];
+        switch (scope) {
+            case EMPTY_ARRAY -> {
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                if (nextNonWhitespace() == ']') {
+                    return JsonToken.END_ARRAY;
+                }
+            }
+            case NONEMPTY_ARRAY -> {
+                int c = nextNonWhitespace();
+                if (c == ']') {
+                    return JsonToken.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                pos++;
+            }
+            case EMPTY_OBJECT, NONEMPTY_OBJECT -> {
+                stack[depth - 1] = DANGLING_NAME;
+                int c = nextNonWhitespace();
+                if (c == '}') {
+                    return JsonToken.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    pos++;
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected a member name");
+                }
+                return JsonToken.NAME;
+            }
+            case DANGLING_NAME -> {
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                pos++;
+            }
+            case EMPTY_DOCUMENT -> stack[depth - 1] = NONEMPTY_DOCUMENT;
+            default -> {
+                if (nextNonWhitespace() == -1) {
+                    return JsonToken.END_DOCUMENT;
+                }
+                throw syntaxError("Unexpected content after the document");
+            }
+        }
+        int c = nextNonWhitespace();
+        return switch (c) {
+            case '{' -> JsonToken.BEGIN_OBJECT;
+            case '[' -> JsonToken.BEGIN_ARRAY;
+            case '"' -> JsonToken.STRING;
+            case 't', 'f' -> JsonToken.BOOLEAN;
+            case 'n' -> JsonToken.NULL;
+            case '-', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> JsonToken.NUMBER;
+            case -1 -> throw syntaxError("Unexpected end of input");
+            default -> throw syntaxError("Unexpected character '" + (char) c + "'");
+        };
+    }
+
+    public void beginObject() {
+        expect(JsonToken.BEGIN_OBJECT);
+        pos++;
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() {
+        expect(JsonToken.END_OBJECT);
+        pos++;
+        depth--;
+    }
+
+    public void beginArray() {
+        expect(JsonToken.BEGIN_ARRAY);
+        pos++;
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() {
+        expect(JsonToken.END_ARRAY);
+        pos++;
+        depth--;
+    }
+
+    // whether the current object or array has another member or element
+    public boolean hasNext() {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    public String nextName() {
+        expect(JsonToken.NAME);
+        pos++;
+        return readString();
+    }
+
+    /**
+     * Reads a string; a number is returned as its literal text.
+     */
+    public String nextString() {
+        JsonToken token = peek();
+        if (token == JsonToken.NUMBER) {
+            peeked = null;
+            return readNumber();
+        }
+        expect(JsonToken.STRING);
+        pos++;
+        return readString();
+    }
+
+    public boolean nextBoolean() {
+        expect(JsonToken.BOOLEAN);
+        if (buffer[pos] == 't') {
+            literal("true");
+            return true;
+        }
+        literal("false");
+        return false;
+    }
+
+    public void nextNull() {
+        expect(JsonToken.NULL);
+        literal("null");
+    }
+
+    // numbers may also be given as strings, as in {"limit":"100"}
+    private String numberText() {
+        JsonToken token = peek();
+        if (token == JsonToken.STRING) {
+            return nextString().strip();
+        }
+        expect(JsonToken.NUMBER);
+        return readNumber();
+    }
+
+    public long nextLong() {
+        String text = numberText();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            BigDecimal value = parseDecimal(text);
+            try {
+                return value.longValueExact();
+            } catch (ArithmeticException notLong) {
+                throw syntaxError("Not a long: " + text);
+            }
+        }
+    }
+
+    public int nextInt() {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw syntaxError("Not an int: " + value);
+        }
+        return (int) value;
+    }
+
+    public double nextDouble() {
+        String text = numberText();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Not a number: " + text);
+        }
+    }
+
+    /**
+     * Integers come back as {@link Long} or, beyond its range, {@link BigInteger};
+     * numbers with a fraction or exponent as {@link Double}.
+     */
+    public Number nextNumber() {
+        expect(JsonToken.NUMBER);
+        String text = readNumber();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return Double.parseDouble(text);
+            }
+        }
+        if (text.length() < 19) {
+            return Long.parseLong(text);
+        }
+        BigInteger value = new BigInteger(text);
+        return value.bitLength() < 64 ? (Number) value.longValue() : value;
+    }
+
+    public BigDecimal nextBigDecimal() {
+        return parseDecimal(numberText());
+    }
+
+    private BigDecimal parseDecimal(String text) {
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Not a number: " + text);
+        }
+    }
+
+    /**
+     * Skips the next value with everything nested in it.
+     */
+    public void skipValue() {
+        int nested = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT -> {
+                    beginObject();
+                    nested++;
+                }
+                case BEGIN_ARRAY -> {
+                    beginArray();
+                    nested++;
+                }
+                case END_OBJECT -> {
+                    endObject();
+                    nested--;
+                }
+                case END_ARRAY -> {
+                    endArray();
+                    nested--;
+                }
+                case NAME -> {
+                    peeked = null;
+                    pos++;
+                    skipString();
+                }
+                case STRING -> {
+                    peeked = null;
+                    pos++;
+                    skipString();
+                }
+                case NUMBER -> {
+                    peeked = null;
+                    readNumber();
+                }
+                case BOOLEAN -> nextBoolean();
+                case NULL -> nextNull();
+                case END_DOCUMENT -> throw syntaxError("Unexpected end of input");
+            }
+        } while (nested > 0);
+    }
+
+    /**
+     * Reads the next value as plain Java objects: objects become {@link LinkedHashMap},
+     * arrays {@link ArrayList}, numbers as in {@link #nextNumber()}.
+     */
+    public Object readValue() {
+        return switch (peek()) {
+            case BEGIN_OBJECT -> {
+                Map<String, Object> map = new LinkedHashMap<>();
+                beginObject();
+                while (hasNext()) {
+                    String name = nextName();
+                    map.put(name, readValue());
+                }
+                endObject();
+                yield map;
+            }
+            case BEGIN_ARRAY -> {
+                List<Object> list = new ArrayList<>();
+                beginArray();
+                while (hasNext()) {
+                    list.add(readValue());
+                }
+                endArray();
+                yield list;
+            }
+            case STRING -> nextString();
+            case NUMBER -> nextNumber();
+            case BOOLEAN -> nextBoolean();
+            case NULL -> {
+                nextNull();
+                yield null;
+            }
+            default -> throw syntaxError("Expected a value but was " + peek());
+        };
+    }
+
+    // fails unless the whole input has been consumed
+    public void endDocument() {
+        expect(JsonToken.END_DOCUMENT);
+    }
+
+    private void expect(JsonToken token) {
+        JsonToken actual = peek();
+        if (actual != token) {
+            throw syntaxError("Expected " + token + " but was " + actual);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            stack = java.util.Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    private int nextNonWhitespace() {
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                return -1;
+            }
+            char c = buffer[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private void literal(String expected) {
+        if (limit - pos < expected.length()) {
+            fill(expected.length());
+        }
+        if (limit - pos < expected.length()) {
+            throw syntaxError("Expected " + expected);
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (buffer[pos + i] != expected.charAt(i)) {
+                throw syntaxError("Expected " + expected);
+            }
+        }
+        pos += expected.length();
+    }
+
+    // after the opening quote; leaves the position after the closing quote
+    private String readString() {
+        StringBuilder builder = null;
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"') {
+                    String chunk = new String(buffer, start, pos - start);
+                    pos++;
+                    return builder == null ? chunk : builder.append(chunk).toString();
+                }
+                if (c == '\\') {
+                    if (builder == null) {
+                        builder = new StringBuilder(Math.max(16, (pos - start) * 2));
+                    }
+                    builder.append(buffer, start, pos - start);
+                    pos++;
+                    builder.append(readEscape());
+                    start = pos;
+                    continue;
+                }
+                if (c < 0x20) {
+                    throw syntaxError("Unescaped control character in a string");
+                }
+                pos++;
+            }
+            if (builder == null) {
+                builder = new StringBuilder(Math.max(16, (pos - start) * 2));
+            }
+            builder.append(buffer, start, pos - start);
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private void skipString() {
+        while (true) {
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    readEscape();
+                }
+            }
+            if (!fill(1)) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    // after the backslash
+    private char readEscape() {
+        if (pos == limit && !fill(1)) {
+            throw syntaxError("Unterminated escape");
+        }
+        char c = buffer[pos++];
+        switch (c) {
+            case '"', '\\', '/' -> {
+                return c;
+            }
+            case 'b' -> {
+                return '\b';
+            }
+            case 'f' -> {
+                return '\f';
+            }
+            case 'n' -> {
+                return '\n';
+            }
+            case 'r' -> {
+                return '\r';
+            }
+            case 't' -> {
+                return '\t';
+            }
+            case 'u' -> {
+                if (limit - pos < 4 && !fill(4)) {
+                    throw syntaxError("Unterminated escape");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer[pos++], 16);
+                    if (digit < 0) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = value << 4 | digit;
+                }
+                return (char) value;
+            }
+            default -> throw syntaxError("Invalid escape '\\" + c + "'");
+        }
+    }
+
+    // -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+    private String readNumber() {
+        StringBuilder builder = null;
+        int start = pos;
+        int state = 0;
+        while (true) {
+            if (pos == limit) {
+                if (builder == null) {
+                    builder = new StringBuilder(32);
+                }
+                builder.append(buffer, start, pos - start);
+                // fill moves the unread rest to the start of the buffer, the slice is consumed either way
+                boolean more = fill(1);
+                start = pos;
+                if (!more) {
+                    break;
+                }
+            }
+            char c = buffer[pos];
+            int next = numberTransition(state, c);
+            if (next < 0) {
+                break;
+            }
+            state = next;
+            pos++;
+        }
+        // states after a digit of the integer, fraction or exponent may end the number
+        if (state != 2 && state != 3 && state != 5 && state != 8) {
+            throw syntaxError("Malformed number");
+        }
+        if (builder == null) {
+            return new String(buffer, start, pos - start);
+        }
+        return builder.append(buffer, start, pos - start).toString();
+    }
+
+    private static int numberTransition(int state, char c) {
+        boolean digit = c >= '0' && c <= '9';
+        return switch (state) {
+            // start
+            case 0 -> c == '-' ? 1 : c == '0' ? 2 : digit ? 3 : -1;
+            // after the minus
+            case 1 -> c == '0' ? 2 : digit ? 3 : -1;
+            // after a leading zero, after integer digits
+            case 2, 3 -> c == '.' ? 4 : c == 'e' || c == 'E' ? 6 : state == 3 && digit ? 3 : -1;
+            // after the point
+            case 4 -> digit ? 5 : -1;
+            // fraction digits
+            case 5 -> digit ? 5 : c == 'e' || c == 'E' ? 6 : -1;
+            // after the exponent mark
+            case 6 -> c == '+' || c == '-' ? 7 : digit ? 8 : -1;
+            // after the exponent sign
+            case 7 -> digit ? 8 : -1;
+            // exponent digits
+            case 8 -> digit ? 8 : -1;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Makes at least {@code minimum} characters available from the position, as far as the
+     * input allows. Returns {@code false} if not even one is left.
+     */
+    private boolean fill(int minimum) {
+        if (source == null) {
+            return limit > pos;
+        }
+        if (pos > 0) {
+            discarded += pos;
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        try {
+            while (limit < minimum) {
+                int read = source.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    break;
+                }
+                limit += read;
+            }
+        } catch (CharacterCodingException e) {
+            throw new JsonException("Input is not valid UTF-8", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return limit > pos;
+    }
+
+    private JsonException syntaxError(String message) {
+        return new JsonException(message + " at offset " + (discarded + pos));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeable != null) {
+            closeable.close();
+        }
+    }
+}
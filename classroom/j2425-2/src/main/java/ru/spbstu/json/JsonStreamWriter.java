@@ -0,0 +1,197 @@
+package ru.spbstu.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON tokens straight to a {@link Writer} without building the document in memory.
+ * Separators between members and array elements are inserted automatically.
+ */
+public class JsonStreamWriter implements Flushable, Closeable {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final char[] digits = new char[20];
+    // one entry per open object or array: whether something has been written into it
+    private boolean[] nonEmpty = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonStreamWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    public JsonStreamWriter name(String name) throws IOException {
+        if (depth == 0 || afterName) {
+            throw new IllegalStateException("Member name outside of an object: " + name);
+        }
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeLong(value.longValue());
+        } else {
+            out.write(value.toString());
+        }
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonStreamWriter value(double value) throws IOException {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("JSON has no " + value);
+        }
+        beforeValue();
+        out.write(Double.toString(value));
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    private JsonStreamWriter open(char bracket) throws IOException {
+        beforeValue();
+        if (depth == nonEmpty.length) {
+            nonEmpty = Arrays.copyOf(nonEmpty, depth * 2);
+        }
+        nonEmpty[depth++] = false;
+        out.write(bracket);
+        return this;
+    }
+
+    private JsonStreamWriter close(char bracket) throws IOException {
+        if (depth == 0 || afterName) {
+            throw new IllegalStateException("Unbalanced " + bracket);
+        }
+        depth--;
+        out.write(bracket);
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        separate();
+    }
+
+    private void separate() throws IOException {
+        if (depth > 0) {
+            if (nonEmpty[depth - 1]) {
+                out.write(',');
+            }
+            nonEmpty[depth - 1] = true;
+        }
+    }
+
+    // digits go through a scratch array rather than Long.toString
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.write("-9223372036854775808");
+            return;
+        }
+        int start = digits.length;
+        long rest = Math.abs(value);
+        do {
+            digits[--start] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            digits[--start] = '-';
+        }
+        out.write(digits, start, digits.length - start);
+    }
+
+    private void string(String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> null;
+            };
+            if (escape == null && c >= 0x20) {
+                continue;
+            }
+            out.write(value, start, i - start);
+            if (escape != null) {
+                out.write(escape);
+            } else {
+                out.write("\\u00");
+                out.write(HEX[c >> 4]);
+                out.write(HEX[c & 0xf]);
+            }
+            start = i + 1;
+        }
+        out.write(value, start, length - start);
+        out.write('"');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,267 @@
+package ru.spbstu.json;
+
+import java.util.Arrays;
+
+/**
+ * Lazy view of the members of a JSON object held in a string. The first access indexes in
+ * one pass where the name and the value of every top-level member lie; nested values are
+ * only skipped over. A value is decoded when it is asked for, so a request can be routed
+ * or rejected by one member without the rest of the body being parsed. Input that is not
+ * a well-formed object has no members; nested values are validated only once decoded.
+ */
+public final class JsonView {
+    private static final int[] NOT_INDEXED = new int[0];
+
+    private final String text;
+    private final int start;
+    private final int end;
+    // nameStart, nameEnd, valueStart, valueEnd per member; names exclude the quotes
+    private int[] spans = NOT_INDEXED;
+    private int members = -1;
+    private boolean object;
+    private String body;
+
+    private JsonView(String text, int start, int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static JsonView of(String text) {
+        return new JsonView(text, 0, text.length());
+    }
+
+    /**
+     * A view of {@code text} from {@code offset} to its end, as the body of {@code "<route> <body>"}.
+     */
+    public static JsonView of(String text, int offset) {
+        int from = Math.min(Math.max(offset, 0), text.length());
+        return new JsonView(text, from, text.length());
+    }
+
+    // the viewed text itself, created once
+    public String text() {
+        if (body == null) {
+            body = text.substring(start, end);
+        }
+        return body;
+    }
+
+    public boolean isObject() {
+        index();
+        return object;
+    }
+
+    public boolean has(String name) {
+        return find(name) >= 0;
+    }
+
+    /**
+     * The member as a string, {@code null} when it is missing or not a string.
+     */
+    public String getString(String name) {
+        int member = find(name);
+        if (member < 0) {
+            return null;
+        }
+        int from = spans[member * 4 + 2];
+        int to = spans[member * 4 + 3];
+        if (text.charAt(from) != '"') {
+            return null;
+        }
+        if (!hasEscape(from, to)) {
+            return text.substring(from + 1, to - 1);
+        }
+        try {
+            return new JsonReader(text.substring(from, to)).nextString();
+        } catch (JsonException e) {
+            return null;
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        int member = find(name);
+        if (member < 0) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(text, spans[member * 4 + 2], spans[member * 4 + 3], 10);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * The JSON text of the member's value, {@code null} when it is missing.
+     */
+    public String raw(String name) {
+        int member = find(name);
+        return member < 0 ? null : text.substring(spans[member * 4 + 2], spans[member * 4 + 3]);
+    }
+
+    // the last member of that name wins, as when the object is bound
+    private int find(String name) {
+        index();
+        for (int member = members - 1; member >= 0; member--) {
+            int from = spans[member * 4];
+            int to = spans[member * 4 + 1];
+            if (to - from == name.length() && text.regionMatches(from, name, 0, name.length())) {
+                return member;
+            }
+            if (hasEscape(from, to) && name.equals(decodeName(from, to))) {
+                return member;
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasEscape(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String decodeName(int from, int to) {
+        try {
+            return new JsonReader(text.substring(from - 1, to + 1)).nextString();
+        } catch (JsonException e) {
+            return null;
+        }
+    }
+
+    private void index() {
+        if (members >= 0) {
+            return;
+        }
+        spans = new int[16];
+        members = 0;
+        object = scan();
+        if (!object) {
+            members = 0;
+        }
+    }
+
+    private boolean scan() {
+        int i = skipWhitespace(start);
+        if (i >= end || text.charAt(i) != '{') {
+            return false;
+        }
+        i = skipWhitespace(i + 1);
+        if (i < end && text.charAt(i) == '}') {
+            return skipWhitespace(i + 1) == end;
+        }
+        while (true) {
+            if (i >= end || text.charAt(i) != '"') {
+                return false;
+            }
+            int nameEnd = skipString(i);
+            if (nameEnd < 0) {
+                return false;
+            }
+            int nameStart = i + 1;
+            i = skipWhitespace(nameEnd);
+            if (i >= end || text.charAt(i) != ':') {
+                return false;
+            }
+            int valueStart = skipWhitespace(i + 1);
+            int valueEnd = skipValue(valueStart);
+            if (valueEnd < 0) {
+                return false;
+            }
+            add(nameStart, nameEnd - 1, valueStart, valueEnd);
+            i = skipWhitespace(valueEnd);
+            if (i >= end) {
+                return false;
+            }
+            char c = text.charAt(i);
+            if (c == '}') {
+                return skipWhitespace(i + 1) == end;
+            }
+            if (c != ',') {
+                return false;
+            }
+            i = skipWhitespace(i + 1);
+        }
+    }
+
+    private void add(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (members * 4 == spans.length) {
+            spans = Arrays.copyOf(spans, spans.length * 2);
+        }
+        int at = members++ * 4;
+        spans[at] = nameStart;
+        spans[at + 1] = nameEnd;
+        spans[at + 2] = valueStart;
+        spans[at + 3] = valueEnd;
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    // from the opening quote to after the closing one, -1 if unterminated
+    private int skipString(int i) {
+        for (i++; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\') {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    // to after the value; brackets are matched but what is between them is not checked
+    private int skipValue(int i) {
+        if (i >= end) {
+            return -1;
+        }
+        char first = text.charAt(i);
+        if (first == '"') {
+            return skipString(i);
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (i < end) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    i = skipString(i);
+                    if (i < 0) {
+                        return -1;
+                    }
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+                i++;
+            }
+            return -1;
+        }
+        int from = i;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                break;
+            }
+            i++;
+        }
+        return i > from ? i : -1;
+    }
+}
@@ -0,0 +1,13 @@
+package ru.spbstu.json;
+
+import java.io.IOException;
+
+/**
+ * A value that writes its own JSON, for responses streamed straight into the output
+ * instead of being collected into objects first.
+ */
+@FunctionalInterface
+public interface JsonWritable {
+
+    void writeJson(JsonStreamWriter writer) throws IOException;
+}
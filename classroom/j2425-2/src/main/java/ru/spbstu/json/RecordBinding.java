@@ -0,0 +1,174 @@
+package ru.spbstu.json;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Codec of one record class, built once: the canonical constructor and the component
+ * accessors are resolved to method handles, so a call does no reflective lookups.
+ * Primitive {@code int}, {@code long}, {@code double} and {@code boolean} components are
+ * written through handles of their own type, without boxing.
+ */
+final class RecordBinding implements JsonMapper.ObjectBinding {
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private enum Kind { INT, LONG, DOUBLE, BOOLEAN, STRING, OTHER }
+
+    private final Class<?> type;
+    private final MethodHandle constructor;
+    private final String[] names;
+    private final Type[] types;
+    private final Kind[] kinds;
+    private final Object[] defaults;
+    private final MethodHandle[] accessors;
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    RecordBinding(Class<?> type) {
+        this.type = type;
+        RecordComponent[] components = type.getRecordComponents();
+        int count = components.length;
+        Class<?>[] parameterTypes = new Class<?>[count];
+        names = new String[count];
+        types = new Type[count];
+        kinds = new Kind[count];
+        defaults = new Object[count];
+        accessors = new MethodHandle[count];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            for (int i = 0; i < count; i++) {
+                Class<?> componentType = components[i].getType();
+                parameterTypes[i] = componentType;
+                names[i] = components[i].getName();
+                types[i] = components[i].getGenericType();
+                kinds[i] = kind(componentType);
+                defaults[i] = JsonMapper.defaultValue(componentType);
+                Method accessor = components[i].getAccessor();
+                // records nested privately in other classes are only reachable this way
+                accessor.setAccessible(true);
+                Class<?> returnType = kinds[i] == Kind.OTHER || kinds[i] == Kind.STRING ? Object.class : componentType;
+                accessors[i] = lookup.unreflect(accessor).asType(MethodType.methodType(returnType, Object.class));
+                indexes.put(names[i], i);
+            }
+            Constructor<?> canonical = type.getDeclaredConstructor(parameterTypes);
+            canonical.setAccessible(true);
+            constructor = lookup.unreflectConstructor(canonical)
+                    .asSpreader(Object[].class, count)
+                    .asType(CONSTRUCTOR_TYPE);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new JsonException("Unable to bind record " + type.getName(), e);
+        }
+    }
+
+    private static Kind kind(Class<?> type) {
+        if (type == int.class) {
+            return Kind.INT;
+        }
+        if (type == long.class) {
+            return Kind.LONG;
+        }
+        if (type == double.class) {
+            return Kind.DOUBLE;
+        }
+        if (type == boolean.class) {
+            return Kind.BOOLEAN;
+        }
+        return type == String.class ? Kind.STRING : Kind.OTHER;
+    }
+
+    @Override
+    public Object read(JsonMapper mapper, JsonReader reader) {
+        Object[] arguments = defaults.clone();
+        reader.beginObject();
+        // members usually come in declaration order, so the next component is tried first
+        int expected = 0;
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            int index;
+            if (expected < names.length && names[expected].equals(name)) {
+                index = expected;
+            } else {
+                Integer found = indexes.get(name);
+                if (found == null) {
+                    reader.skipValue();
+                    continue;
+                }
+                index = found;
+            }
+            arguments[index] = readComponent(mapper, reader, index);
+            expected = index + 1;
+        }
+        reader.endObject();
+        try {
+            return (Object) constructor.invokeExact(arguments);
+        } catch (Throwable e) {
+            throw new JsonException("Unable to create " + type.getName(), e);
+        }
+    }
+
+    private Object readComponent(JsonMapper mapper, JsonReader reader, int index) {
+        JsonToken token = reader.peek();
+        switch (kinds[index]) {
+            case STRING -> {
+                if (token == JsonToken.STRING) {
+                    return reader.nextString();
+                }
+            }
+            case INT -> {
+                if (token == JsonToken.NUMBER) {
+                    return reader.nextInt();
+                }
+            }
+            case LONG -> {
+                if (token == JsonToken.NUMBER) {
+                    return reader.nextLong();
+                }
+            }
+            case BOOLEAN -> {
+                if (token == JsonToken.BOOLEAN) {
+                    return reader.nextBoolean();
+                }
+            }
+            default -> {
+            }
+        }
+        return mapper.read(reader, types[index]);
+    }
+
+    @Override
+    public void write(JsonMapper mapper, JsonStreamWriter writer, Object value) throws IOException {
+        writer.beginObject();
+        try {
+            for (int i = 0; i < accessors.length; i++) {
+                writer.name(names[i]);
+                MethodHandle accessor = accessors[i];
+                switch (kinds[i]) {
+                    case INT -> writer.value((long) (int) accessor.invokeExact(value));
+                    case LONG -> writer.value((long) accessor.invokeExact(value));
+                    case BOOLEAN -> writer.value((boolean) accessor.invokeExact(value));
+                    case DOUBLE -> {
+                        double number = (double) accessor.invokeExact(value);
+                        if (!Double.isFinite(number)) {
+                            throw new JsonException("Non-finite number " + number + " in " + names[i]);
+                        }
+                        writer.value(number);
+                    }
+                    case STRING -> writer.value((String) (Object) accessor.invokeExact(value));
+                    default -> mapper.write(writer, (Object) accessor.invokeExact(value));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new JsonException("Unable to read " + type.getName(), e);
+        }
+        writer.endObject();
+    }
+}
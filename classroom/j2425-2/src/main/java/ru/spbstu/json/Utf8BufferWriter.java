@@ -0,0 +1,117 @@
+package ru.spbstu.json;
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes characters as UTF-8 directly into buffers taken from a {@link ByteBufferPool},
+ * taking another buffer whenever one is full, so no intermediate string or byte array is
+ * built. {@link #finish()} hands the buffers over; they go back to the pool once written.
+ * Unpaired surrogates are written as {@code '?'}, as {@link String#getBytes} does.
+ */
+public class Utf8BufferWriter extends Writer {
+    private final ByteBufferPool pool;
+    private final List<ByteBuffer> buffers = new ArrayList<>(2);
+    private ByteBuffer current;
+    // a high surrogate waiting for its low half, 0 if none
+    private char highSurrogate;
+
+    public Utf8BufferWriter(ByteBufferPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void write(int c) {
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            encode(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String string, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            char c = string.charAt(i);
+            if (c < 0x80 && highSurrogate == 0 && current != null && current.hasRemaining()) {
+                current.put((byte) c);
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                ByteBuffer out = reserve(4);
+                out.put((byte) (0xf0 | codePoint >> 18))
+                        .put((byte) (0x80 | codePoint >> 12 & 0x3f))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3f))
+                        .put((byte) (0x80 | codePoint & 0x3f));
+                return;
+            }
+            reserve(1).put((byte) '?');
+        }
+        if (c < 0x80) {
+            reserve(1).put((byte) c);
+        } else if (c < 0x800) {
+            reserve(2).put((byte) (0xc0 | c >> 6)).put((byte) (0x80 | c & 0x3f));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            reserve(1).put((byte) '?');
+        } else {
+            reserve(3).put((byte) (0xe0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+        }
+    }
+
+    // a code point is never split between two buffers
+    private ByteBuffer reserve(int bytes) {
+        if (current == null || current.remaining() < bytes) {
+            current = pool.acquire();
+            buffers.add(current);
+        }
+        return current;
+    }
+
+    /**
+     * The written bytes, each buffer flipped for reading. The writer must not be used afterwards.
+     */
+    public ByteBuffer[] finish() {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            reserve(1).put((byte) '?');
+        }
+        ByteBuffer[] result = buffers.toArray(new ByteBuffer[0]);
+        for (ByteBuffer buffer : result) {
+            buffer.flip();
+        }
+        buffers.clear();
+        current = null;
+        return result;
+    }
+
+    // returns the buffers to the pool when the output is abandoned
+    public void release() {
+        buffers.forEach(pool::release);
+        buffers.clear();
+        current = null;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
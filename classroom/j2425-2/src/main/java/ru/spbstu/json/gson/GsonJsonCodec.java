@@ -0,0 +1,57 @@
+package ru.spbstu.json.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import ru.spbstu.json.JsonCodec;
+import ru.spbstu.json.JsonException;
+import ru.spbstu.json.JsonStreamWriter;
+import ru.spbstu.json.JsonWritable;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * {@link JsonCodec} on top of Gson, configured as the controllers used it before.
+ */
+public class GsonJsonCodec implements JsonCodec {
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    @Override
+    public <T> T fromJson(String json, Class<T> type) {
+        try {
+            return gson.fromJson(json, type);
+        } catch (JsonParseException e) {
+            throw new JsonException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toJson(Object value) {
+        if (value instanceof JsonWritable) {
+            StringWriter out = new StringWriter();
+            toJson(value, out);
+            return out.toString();
+        }
+        return gson.toJson(value);
+    }
+
+    // Gson knows nothing of JsonWritable, those values write themselves
+    @Override
+    public void toJson(Object value, Writer out) {
+        try {
+            if (value instanceof JsonWritable writable) {
+                writable.writeJson(new JsonStreamWriter(out));
+            } else {
+                gson.toJson(value, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (JsonIOException e) {
+            throw new JsonException(e.getMessage(), e);
+        }
+    }
+}
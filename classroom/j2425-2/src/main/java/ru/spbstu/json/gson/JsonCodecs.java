@@ -0,0 +1,36 @@
+package ru.spbstu.json.gson;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.spbstu.json.JsonCodec;
+import ru.spbstu.json.JsonMapper;
+
+/**
+ * Chooses the codec of the socket and legacy HTTP servers: the in-house {@link JsonMapper}
+ * by default, Gson with {@code -Dimgen.json=gson}.
+ */
+public final class JsonCodecs {
+    static Logger logger = LoggerFactory.getLogger(JsonCodecs.class);
+
+    private static volatile JsonCodec instance;
+
+    private JsonCodecs() {
+    }
+
+    public static JsonCodec fromSystemProperties() {
+        if (instance == null) {
+            synchronized (JsonCodecs.class) {
+                if (instance == null) {
+                    String name = System.getProperty("imgen.json", "inhouse");
+                    instance = switch (name) {
+                        case "gson" -> new GsonJsonCodec();
+                        case "inhouse" -> JsonMapper.getInstance();
+                        default -> throw new IllegalArgumentException("Unknown imgen.json codec: " + name);
+                    };
+                    logger.info("JSON codec: {}", name);
+                }
+            }
+        }
+        return instance;
+    }
+}
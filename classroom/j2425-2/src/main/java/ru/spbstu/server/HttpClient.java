@@ -29,22 +29,75 @@ public class HttpClient {
 
     private static String accessToken = null;
 
+    // one keep-alive connection shared by all calls, reopened when the server drops it
+    private static Socket socket;
+    private static BufferedReader reader;
+    private static BufferedWriter writer;
+
+    /**
+     * @param idempotent whether the request may be sent again when the response is lost;
+     *                   others are repeated only if writing them failed, so the server never saw them
+     */
+    private static synchronized String call(String request, boolean idempotent) throws IOException {
+        boolean reused = socket != null;
+        boolean sent = false;
+        try {
+            send(request);
+            sent = true;
+            return receive();
+        } catch (IOException e) {
+            disconnect();
+            if (!reused || sent && !idempotent) {
+                throw e;
+            }
+            logger.info("Keep-alive connection was closed by server, reconnecting");
+            send(request);
+            return receive();
+        }
+    }
+
+    private static void send(String request) throws IOException {
+        if (socket == null) {
+            socket = new Socket("127.0.0.1", 30001);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+        writer.write(request + "\n");
+        writer.flush();
+    }
+
+    private static String receive() throws IOException {
+        String response = reader.readLine();
+        if (response == null) {
+            throw new EOFException("Connection closed by server");
+        }
+        return response;
+    }
+
+    public static synchronized void disconnect() {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.error("Error while closing connection", e);
+        }
+        socket = null;
+        reader = null;
+        writer = null;
+    }
+
     public static void authorize(
             String login,
             String password
     ) {
         logger.info("Method authorize start executing");
-        try (
-            var socket = new Socket("127.0.0.1", 30001);
-            var reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))
-        ) {
+        try {
             MessageDigest alg = MessageDigest.getInstance("SHA-256");
             String passwordHash = Hex.toHexString(alg.digest(password.getBytes(StandardCharsets.UTF_8)));
 
-            writer.write("/authorize " + gson.toJson(new AuthorizationRequest(login, passwordHash)) + "\n");
-            writer.flush();
-            String response = reader.readLine();
+            String response = call("/authorize " + gson.toJson(new AuthorizationRequest(login, passwordHash)), true);
             logger.info("Клиент написал" + response);
             AuthorizeApiResponse token = gson.fromJson(response, AuthorizeApiResponse.class);
             if (token.code == 401){
@@ -62,15 +115,9 @@ public class HttpClient {
 
     public static void getUsers() {
         logger.info("Method authorize start executing");
-        try (
-                var socket = new Socket("127.0.0.1", 30001);
-                var reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))
-        ) {
-            writer.write("/get-users " + gson.toJson(new AccessToken(accessToken)) + "\n");
-            writer.flush();
+        try {
+            String response = call("/get-users " + gson.toJson(new AccessToken(accessToken)), true);
             logger.info("Клиент написал");
-            String response = reader.readLine();
             logger.info("Получили ответ от сервера: {}", response);
         } catch (IOException e) {
             e.printStackTrace();
@@ -85,15 +132,9 @@ public class HttpClient {
             String text
     ) {
         logger.info("Method generate text start executing");
-        try (
-                var socket = new Socket("127.0.0.1", 30001);
-                var reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()))
-        ) {
-            writer.write("/generate " + gson.toJson(new GenerateTextApiRequest(accessToken, text)) + "\n");
-            writer.flush();
+        try {
+            String response = call("/generate " + gson.toJson(new GenerateTextApiRequest(accessToken, text)), false);
             logger.info("Клиент написал");
-            String response = reader.readLine();
             logger.info(response);
         } catch (IOException e) {
             e.printStackTrace();
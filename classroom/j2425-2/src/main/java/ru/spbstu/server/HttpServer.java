@@ -1,26 +1,45 @@
 package ru.spbstu.server;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import org.bouncycastle.jcajce.provider.asymmetric.mldsa.MLDSAKeyFactorySpi;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.spbstu.db.UserRepository;
+import ru.spbstu.hsai.imgen.components.session.SessionSettings;
+import ru.spbstu.hsai.imgen.components.session.SessionStore;
+import ru.spbstu.json.JsonCodec;
+import ru.spbstu.json.JsonStreamWriter;
+import ru.spbstu.json.JsonView;
+import ru.spbstu.json.gson.JsonCodecs;
 
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HttpServer implements Closeable {
     ServerSocket server;
-    static Gson gson = new GsonBuilder().serializeNulls().create();
-    static HashMap<String, UserApiResponse> authConnections = new HashMap<>();
+    static JsonCodec codec = JsonCodecs.fromSystemProperties();
+    private final SessionStore<UserApiResponse> authConnections = new SessionStore<>(SessionSettings.defaults());
     static Logger logger = LoggerFactory.getLogger(HttpServer.class);
+    static final int IDLE_TIMEOUT_MS = 60_000;
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final String NOT_FOUND = "{\"code\":404}";
+    static final String INTERNAL_ERROR = "{\"code\":500}";
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final UserRepository repa;
 
     public HttpServer(
             int port
     ) throws IOException {
+        this(port, new UserRepository());
+    }
+
+    HttpServer(int port, UserRepository repa) throws IOException {
+        this.repa = repa;
+        repa.initializeDB();
         server = new ServerSocket(port, 100);
         logger.info("ServerSocket created on port: {}", port);
         handleConnections();
@@ -28,19 +47,10 @@ public class HttpServer implements Closeable {
 
     private void handleConnections(){
         new Thread(() -> {
-            while(true){
-                try(var clientSocket = server.accept();
-                    var in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                    var out = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()));){
-                    logger.info("Server handle connection");
-                    String request = in.readLine();
-                    logger.info("Server has got request: {}", request);
-
-                    String response = selectMethod(request);
-
-                    out.write(response);
-                    out.flush();
-                    logger.info("Был получен ответ на запрос: {}", response);
+            while(!server.isClosed()){
+                try{
+                    var clientSocket = server.accept();
+                    connections.submit(() -> serveConnection(clientSocket));
                 }catch (IOException e){
                     e.printStackTrace();
                 }
@@ -48,15 +58,64 @@ public class HttpServer implements Closeable {
         }).start();
     }
 
+    // keep-alive: requests are answered one line each, in order, until the client closes the connection
+    private void serveConnection(Socket clientSocket){
+        try(clientSocket;
+            var in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+            var out = new ResponseWriter(new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream())))){
+            clientSocket.setSoTimeout(IDLE_TIMEOUT_MS);
+            logger.info("Server handle connection");
+            String request;
+            while ((request = in.readLine()) != null){
+                logger.info("Server has got request: {}", request);
+
+                out.startResponse();
+                try {
+                    selectMethod(request, out);
+                } catch (RuntimeException e){
+                    // a failed request is answered with an error line and the connection is kept,
+                    // unless part of its response is already out: that line can't be completed
+                    logger.error("Request failed: {}", request, e);
+                    if (out.started()){
+                        return;
+                    }
+                    out.write(INTERNAL_ERROR);
+                }
+                out.write('\n');
+                // pipelined requests already buffered are answered before flushing
+                if (!in.ready()){
+                    out.flush();
+                }
+                logger.info("Был отправлен ответ на запрос: {}", request);
+            }
+            out.flush();
+        }catch (SocketTimeoutException e){
+            logger.info("Closing idle connection");
+        }catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+
+
+    // the session is checked from the indexed accessToken before the body is bound to a request object
+    private void selectMethod(String request, Writer out) throws IOException {
+        int separator = request.indexOf(' ');
+        String route = separator < 0 ? request : request.substring(0, separator);
+        JsonView body = JsonView.of(request, separator < 0 ? request.length() : separator + 1);
+        switch (route){
+            case "/authorize" -> out.write(authorize(body.text()));
+            case "/get-users" -> writeUserList(body, out);
+            case "/generate" -> out.write(isAuthenticated(body) ? generate(body.text()) : "");
+            default -> {
+                logger.warn("Unexpected route: {}", route);
+                out.write(NOT_FOUND);
+            }
+        }
+    }
 
-    private String selectMethod(String request){
-        String[] splitedRequest = request.split(" ");
-        return switch (splitedRequest[0]){
-            case "/authorize" -> authorize(splitedRequest[1]);
-            case "/get-users" -> getUserList(splitedRequest[1]);
-            case "/generate" -> generate(request.substring(splitedRequest[0].length()));
-            default -> throw new IllegalStateException("Unexpected value: " + splitedRequest[0]);
-        };
+    private boolean isAuthenticated(JsonView body){
+        String token = body.getString("accessToken");
+        return token != null && authConnections.contains(token);
     }
 
     public record UserApiResponse(Integer userID, String login, Integer quota){}
@@ -64,17 +123,15 @@ public class HttpServer implements Closeable {
     private String authorize(String body){
         // /authorization {"login":"login","password":"password"}
         logger.info("Получили запрос authorize с body: {}", body);
-        AuthorizationRequest auth = gson.fromJson(body, AuthorizationRequest.class);
-        UserRepository repa = new UserRepository();
+        AuthorizationRequest auth = codec.fromJson(body, AuthorizationRequest.class);
 
         UserApiResponse user = repa.getUser(auth.login(), auth.password());
         if (user == null){
 
-            return gson.toJson(new AuthorizeApiResponse(401, null, null));
+            return codec.toJson(new AuthorizeApiResponse(401, null, null));
         } else {
-            String token = UUID.randomUUID().toString();
-            authConnections.put(token, user);
-            return gson.toJson(new AuthorizeApiResponse(200, token, user.quota()));
+            String token = authConnections.create(user);
+            return codec.toJson(new AuthorizeApiResponse(200, token, user.quota()));
         }
     }
 
@@ -96,8 +153,8 @@ public class HttpServer implements Closeable {
 
     private String generate(String body){
         // /generate {"token":"token","text":"string"}
-        GenerateTextApiRequest bodyObject = gson.fromJson(body, GenerateTextApiRequest.class);
-        if (bodyObject != null && authConnections.containsKey(bodyObject.accessToken)){
+        GenerateTextApiRequest bodyObject = codec.fromJson(body, GenerateTextApiRequest.class);
+        if (bodyObject != null && authConnections.contains(bodyObject.accessToken)){
             try {
                 URL url = new URL("https://llmhacker-realtime-flux-modified-flux-schnell-for-ja-p.hf.space/run/predict");
                 HttpURLConnection connection = (HttpURLConnection) url.openConnection();
@@ -105,7 +162,7 @@ public class HttpServer implements Closeable {
                 connection.setRequestProperty("Content-Type", "application/json");
                 connection.setDoOutput(true);
                 try(OutputStream os = connection.getOutputStream()) {
-                    byte[] input = gson.toJson(new GenerateImageApiRequest(
+                    byte[] input = codec.toJson(new GenerateImageApiRequest(
                             List.of(bodyObject.text,1231900767,1024,1024,true,1),
                             null,
                             3,
@@ -122,9 +179,9 @@ public class HttpServer implements Closeable {
                     while ((responseLine = br.readLine()) != null) {
                         response.append(responseLine.trim());
                     }
-                    HashMap<String, Object> map = gson.fromJson(response.toString(), HashMap.class);
+                    HashMap<String, Object> map = codec.fromJson(response.toString(), HashMap.class);
                     String imageUrl = (String) ((Map<String, Object>) ((List<Object>) map.get("data")).get(0)).get("url");
-                    return gson.toJson(new URLApiResponse(200, URLDecoder.decode(imageUrl)));
+                    return codec.toJson(new URLApiResponse(200, URLDecoder.decode(imageUrl)));
                 }
             }catch (MalformedURLException e){
                 throw new RuntimeException(e);
@@ -137,23 +194,76 @@ public class HttpServer implements Closeable {
         return "";
     }
 
-    private record AccessToken(String accessToken){}
+    private record UserPageRequest(String accessToken, Integer cursor, Integer limit){}
+
+    // one page per request, rows are written to the connection as they are read from the table
+    private void writeUserList(JsonView body, Writer out) throws IOException {
+        // /get-users {"accessToken":"token","cursor":100,"limit":100}
+        UserPageRequest request = isAuthenticated(body) ? codec.fromJson(body.text(), UserPageRequest.class) : null;
+        JsonStreamWriter json = new JsonStreamWriter(out);
+        json.beginObject();
+        if (request != null){
+            int limit = request.limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(request.limit, MAX_PAGE_SIZE));
+            int[] last = {request.cursor == null ? 0 : request.cursor};
+            json.name("code").value(200).name("users").beginArray();
+            int rows = repa.forEachUserAfter(last[0], limit, (userID, login, quota) -> {
+                last[0] = userID;
+                json.beginObject()
+                        .name("userID").value(userID)
+                        .name("login").value(login)
+                        .name("quota").value(quota)
+                        .endObject();
+            });
+            json.endArray().name("nextCursor").value(rows == limit ? last[0] : null);
+        } else {
+            json.name("code").value(403).name("users").nullValue();
+        }
+        json.endObject();
+    }
 
-    private record GetUserListApiResponse(Integer code, List<UserApiResponse> users){}
+    public int port(){
+        return server.getLocalPort();
+    }
+
+    // remembers whether anything of the current response has been written
+    private static final class ResponseWriter extends FilterWriter {
+        private boolean started;
+
+        ResponseWriter(Writer out){
+            super(out);
+        }
+
+        void startResponse(){
+            started = false;
+        }
+
+        boolean started(){
+            return started;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            started = true;
+            super.write(c);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            started = true;
+            super.write(buffer, offset, length);
+        }
 
-    private String getUserList(String body){
-        // /get-users {"token":"token"}
-        AccessToken token = gson.fromJson(body, AccessToken.class);
-        if (token != null && authConnections.containsKey(token.accessToken)){
-            UserRepository repa = new UserRepository();
-            repa.initializeDB();
-            return gson.toJson(new GetUserListApiResponse(200, repa.getUsers()));
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            started = true;
+            super.write(text, offset, length);
         }
-        return gson.toJson(new GetUserListApiResponse(403, null));
     }
 
     @Override
     public void close() throws IOException {
         server.close();
+        connections.shutdownNow();
+        authConnections.close();
     }
 }
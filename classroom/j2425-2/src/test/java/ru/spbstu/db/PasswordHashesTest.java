@@ -0,0 +1,29 @@
+package ru.spbstu.db;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHashesTest {
+    private static final String HASH = "5e884898da28047151d0e56f8dc6292773603d0d6aabbdd62a11ef721d1542d8";
+
+    @Test
+    void matchesEqualHashes() {
+        assertTrue(PasswordHashes.matches(HASH, new String(HASH.toCharArray())));
+    }
+
+    @Test
+    void rejectsDifferentHashes() {
+        assertFalse(PasswordHashes.matches(HASH, HASH.substring(0, 63) + "9"));
+        assertFalse(PasswordHashes.matches(HASH, HASH.substring(1)));
+        assertFalse(PasswordHashes.matches(HASH, ""));
+    }
+
+    @Test
+    void rejectsMissingHashes() {
+        assertFalse(PasswordHashes.matches(null, HASH));
+        assertFalse(PasswordHashes.matches(HASH, null));
+        assertFalse(PasswordHashes.matches(null, null));
+    }
+}
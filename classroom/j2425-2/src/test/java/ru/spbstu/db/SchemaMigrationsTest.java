@@ -0,0 +1,103 @@
+package ru.spbstu.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SchemaMigrationsTest {
+    private Connection connection;
+
+    @BeforeEach
+    void openDatabase() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void createsSchemaOnEmptyDatabase() throws SQLException {
+        SchemaMigrations.migrate(connection);
+
+        assertEquals(SchemaMigrations.latestVersion(), userVersion());
+        execute("INSERT INTO users(login, password, quota) VALUES ('alice', 'a', 3);");
+        assertEquals(List.of("alice"), logins());
+    }
+
+    // a database written before migration 2 may hold the same login several times
+    @Test
+    void keepsFirstUserOfDuplicateLogins() throws SQLException {
+        execute("""
+                CREATE TABLE users (
+                userID INTEGER PRIMARY KEY AUTOINCREMENT,
+                login TEXT NOT NULL,
+                password TEXT NOT NULL,
+                quota INTEGER NOT NULL
+                );""");
+        execute("INSERT INTO users(login, password, quota) VALUES ('alice', 'first', 3);");
+        execute("INSERT INTO users(login, password, quota) VALUES ('bob', 'b', 3);");
+        execute("INSERT INTO users(login, password, quota) VALUES ('alice', 'second', 1);");
+        execute("INSERT INTO users(login, password, quota) VALUES ('alice', 'third', 0);");
+        execute("PRAGMA user_version = 1;");
+
+        SchemaMigrations.migrate(connection);
+
+        assertEquals(SchemaMigrations.latestVersion(), userVersion());
+        assertEquals(List.of("alice", "bob"), logins());
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT password FROM users WHERE login = 'alice';")) {
+            rs.next();
+            assertEquals("first", rs.getString(1));
+        }
+        assertThrows(SQLException.class,
+                () -> execute("INSERT INTO users(login, password, quota) VALUES ('bob', 'again', 3);"));
+    }
+
+    @Test
+    void appliesMigrationsOnce() throws SQLException {
+        SchemaMigrations.migrate(connection);
+        execute("INSERT INTO users(login, password, quota) VALUES ('alice', 'a', 3);");
+
+        SchemaMigrations.migrate(connection);
+
+        assertEquals(SchemaMigrations.latestVersion(), userVersion());
+        assertEquals(List.of("alice"), logins());
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private int userVersion() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA user_version;")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private List<String> logins() throws SQLException {
+        List<String> logins = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT login FROM users ORDER BY login;")) {
+            while (rs.next()) {
+                logins.add(rs.getString(1));
+            }
+        }
+        return logins;
+    }
+}
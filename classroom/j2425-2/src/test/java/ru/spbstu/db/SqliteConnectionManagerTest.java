@@ -0,0 +1,115 @@
+package ru.spbstu.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqliteConnectionManagerTest {
+    private Path directory;
+    private SqliteConnectionManager connections;
+
+    @BeforeEach
+    void open() throws IOException, SQLException {
+        directory = Files.createTempDirectory("sqlite-manager");
+        connections = new SqliteConnectionManager("jdbc:sqlite:" + directory.resolve("test.db"), 1);
+        connections.write(conn -> {
+            try (Statement statement = conn.connection().createStatement()) {
+                statement.execute("CREATE TABLE items (value INTEGER NOT NULL)");
+            }
+            return null;
+        });
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        connections.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void failingTaskDoesNotUndoOthers() throws Exception {
+        CompletableFuture<Integer> first = connections.writeAsync(conn -> insert(conn, 1));
+        CompletableFuture<Integer> failing = connections.writeAsync(conn -> {
+            throw new SQLException("task failure");
+        });
+        CompletableFuture<Integer> last = connections.writeAsync(conn -> insert(conn, 2));
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, last.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertEquals(2L, count());
+    }
+
+    // a task that ends the transaction makes the batch fail outside of any task body
+    @Test
+    void completesWholeBatchWhenTransactionFails() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Object> blocker = connections.writeAsync(conn -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> breaking = connections.writeAsync(conn -> {
+            conn.connection().commit();
+            return null;
+        });
+        CompletableFuture<Integer> queued = connections.writeAsync(conn -> insert(conn, 3));
+        release.countDown();
+
+        blocker.get(5, TimeUnit.SECONDS);
+        assertThrows(ExecutionException.class, () -> breaking.get(5, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        // the writer keeps working after the failed batch
+        int inserted = connections.write(conn -> insert(conn, 4));
+        assertEquals(1, inserted);
+    }
+
+    @Test
+    void failsWritesAfterClose() {
+        connections.close();
+
+        CompletableFuture<Integer> write = connections.writeAsync(conn -> insert(conn, 5));
+
+        assertTrue(write.isCompletedExceptionally());
+    }
+
+    private static int insert(SqliteConnectionManager.CachedConnection conn, int value) throws SQLException {
+        var statement = conn.prepare("INSERT INTO items (value) VALUES (?)");
+        statement.setInt(1, value);
+        return statement.executeUpdate();
+    }
+
+    private long count() throws SQLException {
+        return connections.withConnection(conn -> {
+            try (var rs = conn.prepare("SELECT COUNT(*) FROM items").executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+    }
+}
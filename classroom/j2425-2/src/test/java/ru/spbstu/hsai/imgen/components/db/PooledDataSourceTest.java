@@ -0,0 +1,91 @@
+package ru.spbstu.hsai.imgen.components.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledDataSourceTest {
+    private static final int CLOSING_THREADS = 8;
+
+    private Path directory;
+    private PooledDataSource pool;
+
+    @BeforeEach
+    void open() throws IOException {
+        directory = Files.createTempDirectory("pool");
+        pool = new PooledDataSource(new PoolSettings("org.sqlite.JDBC",
+                "jdbc:sqlite:" + directory.resolve("test.db"), null, null, 0, 1, 100, 60_000, 1, 0));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        pool.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void concurrentClosesReturnTheConnectionOnce() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(CLOSING_THREADS);
+        try {
+            for (int round = 0; round < 200; round++) {
+                Connection connection = pool.getConnection();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> closes = new ArrayList<>();
+                for (int i = 0; i < CLOSING_THREADS; i++) {
+                    closes.add(threads.submit(() -> {
+                        start.await();
+                        connection.close();
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> close : closes) {
+                    close.get(10, TimeUnit.SECONDS);
+                }
+                assertTrue(connection.isClosed());
+                assertEquals(1, pool.stats().idle());
+                assertEquals(0, pool.stats().active());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        // a connection returned twice would have released a second permit over maxSize
+        try (Connection first = pool.getConnection()) {
+            assertThrows(SQLTimeoutException.class, pool::getConnection);
+        }
+    }
+
+    @Test
+    void closedConnectionRejectsUse() throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        assertThrows(SQLException.class, connection::createStatement);
+        assertEquals(1, pool.stats().idle());
+    }
+}
@@ -0,0 +1,79 @@
+package ru.spbstu.hsai.imgen.components.image.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PromptCacheTest {
+    private static final String FIRST = "a".repeat(64);
+    private static final String SECOND = "b".repeat(64);
+    private static final long NO_GRACE = 0;
+    private static final long LONG_GRACE = TimeUnit.HOURS.toNanos(1);
+
+    private Path directory;
+    private PromptCache cache;
+
+    @BeforeEach
+    void open() throws IOException {
+        directory = Files.createTempDirectory("prompt-cache");
+        // one entry, so every put evicts the previous prompt; the background run is kept out of the way
+        cache = new PromptCache(new PromptCacheSettings(directory, 1, 1_000_000, TimeUnit.HOURS.toMillis(1)));
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        cache.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void evictedFileOutlivesTheGracePeriodOfAPathHandedOut() throws IOException {
+        cache.put("first", image(FIRST, "first image"));
+        Path served = cache.file(FIRST).orElseThrow();
+
+        cache.put("second", image(SECOND, "second image"));
+
+        assertEquals(Optional.empty(), cache.file(FIRST));
+        cache.deleteReleased(LONG_GRACE);
+        assertEquals("first image", Files.readString(served));
+
+        cache.deleteReleased(NO_GRACE);
+        assertFalse(Files.exists(served));
+        assertTrue(Files.exists(cache.file(SECOND).orElseThrow()));
+    }
+
+    @Test
+    void fileStoredAgainBeforeDeletionIsKept() throws IOException {
+        cache.put("first", image(FIRST, "first image"));
+        cache.put("second", image(SECOND, "second image"));
+
+        cache.put("again", image(FIRST, "first image"));
+        cache.deleteReleased(NO_GRACE);
+
+        assertEquals("first image", Files.readString(cache.get("again").orElseThrow()));
+        assertFalse(Files.exists(directory.resolve(SECOND)));
+    }
+
+    private ImageFile image(String contentHash, String content) throws IOException {
+        Path temp = cache.newTempFile();
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        return new ImageFile(temp, contentHash, Files.size(temp));
+    }
+}
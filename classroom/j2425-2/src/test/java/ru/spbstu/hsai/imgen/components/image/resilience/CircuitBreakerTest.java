@@ -0,0 +1,92 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+    private static final long OPEN_DURATION_MS = 50;
+
+    // opens at half of the last 4 calls failing, probes with 2 calls
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker(new ResilienceSettings(
+                0.5, 4, 4, OPEN_DURATION_MS, 2, 3, 0, 0, 0.1, 1, false, 1_000));
+    }
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 3; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void opensAtFailureRateThreshold() {
+        CircuitBreaker breaker = breaker();
+        breaker.record(breaker.tryAcquire(), true);
+        breaker.record(breaker.tryAcquire(), true);
+        breaker.record(breaker.tryAcquire(), false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        breaker.record(breaker.tryAcquire(), false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(-1, breaker.tryAcquire());
+        assertEquals(1L, breaker.rejectedCalls());
+    }
+
+    @Test
+    void closesAfterSuccessfulProbes() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_DURATION_MS + 20);
+
+        long first = breaker.tryAcquire();
+        long second = breaker.tryAcquire();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        assertTrue(first >= 0 && second >= 0);
+        // only the configured number of probes is let through
+        assertEquals(-1, breaker.tryAcquire());
+
+        breaker.record(first, true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.record(second, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void reopensOnFailedProbe() throws InterruptedException {
+        CircuitBreaker breaker = openBreaker();
+        Thread.sleep(OPEN_DURATION_MS + 20);
+
+        breaker.record(breaker.tryAcquire(), false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(2L, breaker.transitions().get(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    void ignoresOutcomesFromBeforeStateChange() {
+        CircuitBreaker breaker = breaker();
+        long stale = breaker.tryAcquire();
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        breaker.record(stale, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    private static CircuitBreaker openBreaker() {
+        CircuitBreaker breaker = breaker();
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), false);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        return breaker;
+    }
+}
@@ -0,0 +1,45 @@
+package ru.spbstu.hsai.imgen.components.image.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// without a per-second allowance the budget depends on the request count only
+class RetryBudgetTest {
+
+    @Test
+    void startsEmptyWithoutAllowance() {
+        assertFalse(new RetryBudget(0.5, 0).tryRetry());
+    }
+
+    @Test
+    void allowsRetriesInProportionToRequests() {
+        RetryBudget budget = new RetryBudget(0.5, 0);
+        budget.onRequest();
+        assertFalse(budget.tryRetry());
+        budget.onRequest();
+        assertTrue(budget.tryRetry());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    void capsSavedRetries() {
+        RetryBudget budget = new RetryBudget(0.5, 0);
+        for (int i = 0; i < 1_000; i++) {
+            budget.onRequest();
+        }
+        int retries = 0;
+        while (budget.tryRetry()) {
+            retries++;
+        }
+        // a hundred requests' worth of deposits
+        assertEquals(50, retries);
+    }
+
+    @Test
+    void allowanceGivesRetriesWithoutTraffic() {
+        assertTrue(new RetryBudget(0, 1).tryRetry());
+    }
+}
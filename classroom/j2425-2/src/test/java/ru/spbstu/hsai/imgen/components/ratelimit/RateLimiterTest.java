@@ -0,0 +1,35 @@
+package ru.spbstu.hsai.imgen.components.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    @Test
+    void limitsEachKeyToItsBurst() {
+        RateLimiter limiter = new RateLimiter(new RateLimitSettings(0.001, 2, 10));
+
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+        assertEquals(0, limiter.tryAcquire("b"));
+    }
+
+    @Test
+    void keysBeyondMaxKeysShareOneBucket() {
+        RateLimiter limiter = new RateLimiter(new RateLimitSettings(0.001, 2, 1));
+        assertEquals(0, limiter.tryAcquire("tracked"));
+
+        assertEquals(0, limiter.tryAcquire("new-1"));
+        assertEquals(0, limiter.tryAcquire("new-2"));
+        assertTrue(limiter.tryAcquire("new-3") > 0);
+        assertTrue(limiter.tryAcquire("new-4") > 0);
+
+        RateLimitStats stats = limiter.stats();
+        assertEquals(1, stats.keys());
+        assertEquals(4, stats.untracked());
+        assertEquals(2, stats.rejected());
+    }
+}
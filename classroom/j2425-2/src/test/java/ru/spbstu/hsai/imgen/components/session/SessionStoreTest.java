@@ -0,0 +1,105 @@
+package ru.spbstu.hsai.imgen.components.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionStoreTest {
+    private static final long NO_SWEEP = 3_600_000;
+
+    @Test
+    void evictsTheLeastRecentlyUsedSessionOverTheLimit() {
+        try (SessionStore<String> store = new SessionStore<>(new SessionSettings(60_000, 60_000, 1, NO_SWEEP))) {
+            String first = store.create("first");
+            String second = store.create("second");
+
+            assertEquals(Optional.empty(), store.get(first));
+            assertEquals(Optional.of("second"), store.get(second));
+            assertEquals(1, store.stats().size());
+            assertEquals(1, store.stats().evicted());
+        }
+    }
+
+    @Test
+    void neverHoldsMoreThanMaxSessions() throws Exception {
+        int maxSessions = 100;
+        try (SessionStore<Integer> store = new SessionStore<>(new SessionSettings(60_000, 60_000, maxSessions, NO_SWEEP))) {
+            ExecutorService threads = Executors.newFixedThreadPool(8);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                writers.add(threads.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        store.get(store.create(i));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            threads.shutdown();
+
+            SessionStats stats = store.stats();
+            assertTrue(stats.size() <= maxSessions, "size " + stats.size());
+            assertEquals(8_000, stats.created());
+            assertEquals(8_000, stats.size() + stats.evicted());
+        }
+    }
+
+    @Test
+    void sweepRemovesIdleSessionsButKeepsUsedOnes() throws Exception {
+        try (SessionStore<String> store = new SessionStore<>(new SessionSettings(200, 60_000, 100, NO_SWEEP))) {
+            String idle = store.create("idle");
+            String used = store.create("used");
+            for (int i = 0; i < 6; i++) {
+                Thread.sleep(50);
+                assertEquals(Optional.of("used"), store.get(used));
+            }
+
+            store.sweep();
+
+            assertEquals(1, store.stats().size());
+            assertEquals(1, store.stats().expired());
+            assertEquals(Optional.of("used"), store.get(used));
+            assertEquals(Optional.empty(), store.get(idle));
+        }
+    }
+
+    @Test
+    void sweepRemovesSessionsPastTheAbsoluteTimeoutEvenIfUsed() throws Exception {
+        try (SessionStore<String> store = new SessionStore<>(new SessionSettings(60_000, 300, 100, NO_SWEEP))) {
+            String old = store.create("old");
+            Thread.sleep(200);
+            String young = store.create("young");
+            Thread.sleep(150);
+            store.get(old);
+
+            store.sweep();
+
+            assertEquals(1, store.stats().size());
+            assertEquals(Optional.of("young"), store.get(young));
+        }
+    }
+
+    @Test
+    void invalidatedSessionsAreGone() {
+        try (SessionStore<String> store = new SessionStore<>(new SessionSettings(60_000, 60_000, 10, NO_SWEEP))) {
+            String token = store.create("value");
+            store.invalidate(token);
+            store.invalidate(token);
+            store.invalidate(null);
+
+            assertEquals(Optional.empty(), store.get(token));
+            assertEquals(1, store.stats().invalidated());
+            assertEquals(0, store.stats().size());
+        }
+    }
+}
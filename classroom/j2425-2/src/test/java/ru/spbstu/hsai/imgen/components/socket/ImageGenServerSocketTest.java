@@ -0,0 +1,97 @@
+package ru.spbstu.hsai.imgen.components.socket;
+
+import org.junit.jupiter.api.Test;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimitSettings;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimits;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ImageGenServerSocketTest {
+    private static final int CLIENTS = 16;
+    private static final int REQUESTS_PER_CLIENT = 200;
+
+    @Test
+    void handlesEveryPipelinedRequestOnceOnPlatformThreads() throws Exception {
+        dispatchOverSockets(RequestExecutor.Mode.PLATFORM);
+    }
+
+    @Test
+    void handlesEveryPipelinedRequestOnceOnVirtualThreads() throws Exception {
+        dispatchOverSockets(RequestExecutor.Mode.VIRTUAL);
+    }
+
+    private static void dispatchOverSockets(RequestExecutor.Mode mode) throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+        Map<String, AtomicInteger> perRequest = new ConcurrentHashMap<>();
+        RequestDispatcher dispatcher = new RequestDispatcher(Optional::of)
+                .register("/count", body -> {
+                    invocations.incrementAndGet();
+                    perRequest.computeIfAbsent(body, b -> new AtomicInteger()).incrementAndGet();
+                    return "{\"code\":200}";
+                });
+        RateLimitSettings unlimited = new RateLimitSettings(1_000_000, 1_000_000, 1_000);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try (ImageGenServerSocket server = new ImageGenServerSocket(0, true,
+                new RequestExecutor(mode, 8, CLIENTS * REQUESTS_PER_CLIENT),
+                new RateLimits(unlimited, unlimited), dispatcher)) {
+            List<Future<List<String>>> responses = new ArrayList<>();
+            for (int client = 0; client < CLIENTS; client++) {
+                int id = client;
+                responses.add(clients.submit(() -> pipeline(server.port(), id)));
+            }
+            for (Future<List<String>> response : responses) {
+                List<String> lines = response.get(30, TimeUnit.SECONDS);
+                assertEquals(REQUESTS_PER_CLIENT, lines.size());
+                lines.forEach(line -> assertEquals("{\"code\":200}", line));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, invocations.get());
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, perRequest.size());
+        perRequest.forEach((body, count) -> assertEquals(1, count.get(), body));
+    }
+
+    // all requests of the client are written at once on one keep-alive connection
+    private static List<String> pipeline(int port, int client) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(30_000);
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                requests.append("/count {\"client\": ").append(client)
+                        .append(", \"request\": ").append(i).append("}\n");
+            }
+            socket.getOutputStream().write(requests.toString().getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+}
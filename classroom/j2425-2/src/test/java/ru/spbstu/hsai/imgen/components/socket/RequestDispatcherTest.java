@@ -0,0 +1,55 @@
+package ru.spbstu.hsai.imgen.components.socket;
+
+import org.junit.jupiter.api.Test;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimitSettings;
+import ru.spbstu.hsai.imgen.components.ratelimit.RateLimiter;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDispatcherTest {
+    private static final Map<String, String> SESSIONS = Map.of("token-1", "7", "token-2", "7", "token-3", "8");
+
+    @Test
+    void chargesTheUserLimitPerUserAcrossTokens() {
+        AtomicInteger handled = new AtomicInteger();
+        RequestDispatcher dispatcher = dispatcher(handled, new RateLimiter(new RateLimitSettings(0.001, 2, 10)));
+
+        assertEquals("{\"code\":200}", dispatcher.dispatch("/generate {\"accessToken\": \"token-1\"}").body());
+        assertEquals("{\"code\":200}", dispatcher.dispatch("/generate {\"accessToken\": \"token-2\"}").body());
+        RequestDispatcher.Response limited = dispatcher.dispatch("/generate {\"accessToken\": \"token-1\"}");
+        assertTrue(limited.retryAfterMs() > 0);
+        assertTrue(((String) limited.body()).startsWith("{\"code\":429"));
+        assertEquals("{\"code\":200}", dispatcher.dispatch("/generate {\"accessToken\": \"token-3\"}").body());
+        assertEquals(3, handled.get());
+    }
+
+    @Test
+    void doesNotChargeTokensWithoutASession() {
+        AtomicInteger handled = new AtomicInteger();
+        RateLimiter limiter = new RateLimiter(new RateLimitSettings(0.001, 2, 1));
+        RequestDispatcher dispatcher = dispatcher(handled, limiter);
+
+        for (int i = 0; i < 10; i++) {
+            RequestDispatcher.Response response = dispatcher.dispatch("/generate {\"accessToken\": \"random-" + i + "\"}");
+            assertEquals("{\"code\":401}", response.body());
+            assertEquals(0, response.retryAfterMs());
+        }
+        assertEquals(0, limiter.stats().allowed() + limiter.stats().rejected());
+        assertEquals("{\"code\":200}", dispatcher.dispatch("/generate {\"accessToken\": \"token-3\"}").body());
+        assertEquals(1, handled.get());
+    }
+
+    private static RequestDispatcher dispatcher(AtomicInteger handled, RateLimiter limiter) {
+        return new RequestDispatcher(token -> Optional.ofNullable(SESSIONS.get(token)))
+                .limitUsers(limiter)
+                .registerAuthenticated("/generate", body -> {
+                    handled.incrementAndGet();
+                    return "{\"code\":200}";
+                });
+    }
+}
@@ -0,0 +1,61 @@
+package ru.spbstu.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonReaderTest {
+    private static final List<Function<String, JsonReader>> SOURCES = List.of(
+            JsonReader::new,
+            json -> new JsonReader(new StringReader(json)),
+            json -> new JsonReader(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)))
+    );
+
+    @Test
+    void readsTopLevelNumbers() {
+        for (Function<String, JsonReader> source : SOURCES) {
+            assertEquals(42L, source.apply("42").nextNumber());
+            assertEquals(42L, source.apply("  42").nextNumber());
+            assertEquals(-7L, source.apply("-7 ").nextNumber());
+            assertEquals(1.5, source.apply("1.5").nextNumber());
+            assertEquals(1500.0, source.apply("1.5e3").nextNumber());
+            assertEquals(0.025, source.apply("2.5E-2").nextNumber());
+            assertEquals(new BigInteger("123456789012345678901234567890"),
+                    source.apply("123456789012345678901234567890").nextNumber());
+        }
+    }
+
+    @Test
+    void mapsTopLevelNumbers() {
+        JsonMapper mapper = JsonMapper.getInstance();
+        assertEquals(42, mapper.fromJson("42", Integer.class));
+        assertEquals(42, mapper.fromJson(new StringReader("42"), Integer.class));
+        assertEquals(42, mapper.fromJson(ByteBuffer.wrap("  42".getBytes(StandardCharsets.UTF_8)), Integer.class));
+        assertEquals(1500.0, mapper.fromJson("1.5e3", Double.class));
+    }
+
+    // the reader and byte buffer sources refill an 8192 char buffer in the middle of the number
+    @Test
+    void readsNumberAcrossBufferBoundary() {
+        String json = "[" + " ".repeat(8187) + "1234567.25e2, 8]";
+        for (Function<String, JsonReader> source : SOURCES) {
+            JsonReader reader = source.apply(json);
+            reader.beginArray();
+            assertEquals(123456725.0, reader.nextDouble());
+            assertEquals(8L, reader.nextLong());
+            reader.endArray();
+            reader.endDocument();
+
+            JsonReader scalar = source.apply(" ".repeat(8190) + "-1234.5e1");
+            assertEquals(-12345.0, scalar.nextDouble());
+            scalar.endDocument();
+        }
+    }
+}
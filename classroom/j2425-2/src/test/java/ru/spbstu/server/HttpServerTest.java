@@ -0,0 +1,81 @@
+package ru.spbstu.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.spbstu.db.SqliteConnectionManager;
+import ru.spbstu.db.UserRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HttpServerTest {
+    private Path directory;
+    private SqliteConnectionManager connections;
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws IOException, SQLException {
+        directory = Files.createTempDirectory("http-server");
+        connections = new SqliteConnectionManager("jdbc:sqlite:" + directory.resolve("test.db"), 1);
+        server = new HttpServer(0, new UserRepository(connections));
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+        connections.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void keepsServingTheConnectionAfterFailedRequests() throws IOException {
+        List<String> lines = send(
+                "/unknown {}",
+                "/authorize {not json",
+                "/get-users {\"accessToken\": \"none\"}"
+        );
+
+        assertEquals(List.of(
+                HttpServer.NOT_FOUND,
+                HttpServer.INTERNAL_ERROR,
+                "{\"code\":403,\"users\":null}"
+        ), lines);
+    }
+
+    // all requests are pipelined on one keep-alive connection
+    private List<String> send(String... requests) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            socket.setSoTimeout(10_000);
+            socket.getOutputStream().write((String.join("\n", requests) + "\n").getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < requests.length; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lines.add(line);
+            }
+            return lines;
+        }
+    }
+}